@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.model.Neighbour;
+import ru.yandex.practicum.filmorate.storage.dao.user.neighbors.NeighborJobCheckpoint;
+import ru.yandex.practicum.filmorate.storage.dao.user.neighbors.UserNeighborsStorage;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class InMemoryUserNeighborsStorage implements UserNeighborsStorage {
+    private final int users;
+    private final ConcurrentMap<Integer, List<Neighbour>> neighbours = new ConcurrentHashMap<>();
+
+    public InMemoryUserNeighborsStorage(int users) {
+        this.users = users;
+    }
+
+    @Override
+    public void replaceNeighbours(Map<Integer, List<Neighbour>> neighboursByUserId) {
+        neighbours.putAll(neighboursByUserId);
+    }
+
+    @Override
+    public List<Neighbour> getNeighbours(int userId, int limit) {
+        List<Neighbour> stored = neighbours.getOrDefault(userId, Collections.emptyList());
+
+        return stored.subList(0, Math.min(limit, stored.size()));
+    }
+
+    @Override
+    public boolean isRefreshed(int userId) {
+        return neighbours.containsKey(userId);
+    }
+
+    @Override
+    public List<Integer> getUsersWithNeighbours(Collection<Integer> neighbourIds) {
+        Set<Integer> wanted = new HashSet<>(neighbourIds);
+
+        return neighbours.entrySet().stream()
+                .filter(entry -> entry.getValue().stream()
+                        .anyMatch(neighbour -> wanted.contains(neighbour.getUserId())))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Integer> getUserIdsAfter(int afterUserId, int limit) {
+        return IntStream.rangeClosed(afterUserId + 1, Math.min(users, afterUserId + limit))
+                .boxed()
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long countUsers() {
+        return users;
+    }
+
+    @Override
+    public NeighborJobCheckpoint getCheckpoint(String jobName) {
+        return null;
+    }
+
+    @Override
+    public void saveCheckpoint(String jobName, int lastUserId, long processed) {
+    }
+
+    @Override
+    public void deleteCheckpoint(String jobName) {
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Neighbour;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RecommendationBenchmark {
+    @Benchmark
+    public double cosineSimilarity(RecommendationBenchmarkState state) {
+        return state.getUserScoreMatrix().cosineSimilarity(randomUserId(state), randomUserId(state));
+    }
+
+    @Benchmark
+    public List<Neighbour> nearestNeighbours(RecommendationBenchmarkState state) {
+        int userId = randomUserId(state);
+        int[] candidates = state.getFilmRatersIndex().findCandidates(userId,
+                state.getUserScoreMatrix().getScoreVector(userId).filmIds());
+
+        return state.getSimilarityScorer().findNearestNeighbours(userId, candidates, 50);
+    }
+
+    @Benchmark
+    public List<Film> recommendationByUsers(RecommendationBenchmarkState state) {
+        return state.getCollaborativeFilteringService().getRecommendationByUsers(randomUserId(state));
+    }
+
+    private static int randomUserId(RecommendationBenchmarkState state) {
+        return 1 + ThreadLocalRandom.current().nextInt(state.getUsers());
+    }
+}
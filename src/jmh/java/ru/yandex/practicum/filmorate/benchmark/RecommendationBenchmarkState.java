@@ -0,0 +1,280 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.event.FilmEventPublisher;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.recommendation.CollaborativeFilteringService;
+import ru.yandex.practicum.filmorate.service.recommendation.MinHashIndex;
+import ru.yandex.practicum.filmorate.service.recommendation.SimilarityCache;
+import ru.yandex.practicum.filmorate.service.recommendation.SimilarityScorer;
+import ru.yandex.practicum.filmorate.service.recommendation.UserNeighborsJob;
+import ru.yandex.practicum.filmorate.storage.dao.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmRatersIndex;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.film.UserScoreMatrix;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+@State(Scope.Benchmark)
+public class RecommendationBenchmarkState {
+    private static final int BATCH_SIZE = 10_000;
+    private static final int NEIGHBOURS = 50;
+
+    @Param({"10000", "100000", "1000000"})
+    public int users;
+
+    @Param({"10000"})
+    public int films;
+
+    @Param({"0.002"})
+    public double density;
+
+    @Param({"mock", "h2"})
+    public String storage;
+
+    private SyntheticScores scores;
+    private ConfigurableApplicationContext context;
+    private UserScoreMatrix userScoreMatrix;
+    private FilmRatersIndex filmRatersIndex;
+    private SimilarityScorer similarityScorer;
+    private CollaborativeFilteringService collaborativeFilteringService;
+
+    @Setup
+    public void setUp() throws Exception {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        scores = SyntheticScores.generate(users, films, density, 42);
+
+        if ("h2".equals(storage)) {
+            setUpH2();
+        } else {
+            setUpMocks();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        } else if (similarityScorer != null) {
+            similarityScorer.shutdown();
+        }
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public UserScoreMatrix getUserScoreMatrix() {
+        return userScoreMatrix;
+    }
+
+    public FilmRatersIndex getFilmRatersIndex() {
+        return filmRatersIndex;
+    }
+
+    public SimilarityScorer getSimilarityScorer() {
+        return similarityScorer;
+    }
+
+    public CollaborativeFilteringService getCollaborativeFilteringService() {
+        return collaborativeFilteringService;
+    }
+
+    private void setUpMocks() {
+        FilmEventPublisher filmEventPublisher = new FilmEventPublisher();
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class, withSettings().stubOnly());
+
+        doAnswer(invocation -> {
+            feed(scores::forEachByUser, invocation.getArgument(1));
+
+            return null;
+        }).when(jdbcTemplate).query(contains("ORDER BY user_id, film_id"), any(RowCallbackHandler.class));
+        doAnswer(invocation -> {
+            feed(scores::forEachByFilm, invocation.getArgument(1));
+
+            return null;
+        }).when(jdbcTemplate).query(contains("ORDER BY film_id, user_id"), any(RowCallbackHandler.class));
+        when(jdbcTemplate.queryForList(contains("FROM users"), eq(Integer.class)))
+                .thenReturn(IntStream.rangeClosed(1, users).boxed().collect(Collectors.toList()));
+
+        userScoreMatrix = new UserScoreMatrix(jdbcTemplate, filmEventPublisher);
+        userScoreMatrix.rebuild();
+        filmRatersIndex = new FilmRatersIndex(jdbcTemplate, filmEventPublisher);
+        ReflectionTestUtils.setField(filmRatersIndex, "maxRatersPerFilm", 1000);
+        filmRatersIndex.rebuild();
+
+        SimilarityCache similarityCache = new SimilarityCache(100_000, new SimpleMeterRegistry(), userScoreMatrix);
+        LiveIdRegistry liveIds = new LiveIdRegistry(jdbcTemplate, mock(NamedParameterJdbcTemplate.class));
+
+        liveIds.reload();
+        similarityScorer = new SimilarityScorer(userScoreMatrix, similarityCache, 0, 2048);
+
+        UserNeighborsJob userNeighborsJob = new UserNeighborsJob(new InMemoryUserNeighborsStorage(users),
+                userScoreMatrix, filmRatersIndex, similarityScorer,
+                new StaticListableBeanFactory().getBeanProvider(MinHashIndex.class), liveIds,
+                filmEventPublisher, new SimpleMeterRegistry(), NEIGHBOURS, 500);
+        FilmStorage filmStorage = mock(FilmStorage.class, withSettings().stubOnly());
+
+        when(filmStorage.getFilmsByIds(anyCollection()))
+                .thenAnswer(invocation -> toFilms(invocation.getArgument(0)));
+
+        collaborativeFilteringService = new CollaborativeFilteringService(userScoreMatrix, filmStorage,
+                userNeighborsJob, 20, 20);
+    }
+
+    private void setUpH2() throws Exception {
+        Path snapshot = Files.createTempDirectory("filmorate-benchmark").resolve("mf-model.bin");
+
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.sql.init.encoding=UTF-8",
+                        "--logging.level.root=WARN",
+                        "--filmorate.recommendations.neighbours=" + NEIGHBOURS,
+                        "--filmorate.recommendations.neighbours-job.full-initial-delay-ms=86400000",
+                        "--filmorate.recommendations.item.rebuild-interval-ms=86400000",
+                        "--filmorate.recommendations.mf.train-interval-ms=86400000",
+                        "--filmorate.recommendations.mf.snapshot-path=" + snapshot);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Date birthday = Date.valueOf(LocalDate.of(2000, 1, 1));
+
+        insert(jdbcTemplate, "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)", users,
+                (ps, row) -> {
+                    ps.setString(1, "user" + row + "@benchmark.ru");
+                    ps.setString(2, "user" + row);
+                    ps.setString(3, "user" + row);
+                    ps.setDate(4, birthday);
+                });
+        insert(jdbcTemplate, "INSERT INTO films (name, description, release_date, duration, rating_id, ranking) " +
+                "VALUES (?, ?, ?, ?, 1, 0)", films, (ps, row) -> {
+                    ps.setString(1, "film" + row);
+                    ps.setString(2, "film" + row);
+                    ps.setDate(3, birthday);
+                    ps.setInt(4, 120);
+                });
+        insert(jdbcTemplate, "INSERT INTO film_score (film_id, user_id, score) VALUES (?, ?, ?)", scores.size(),
+                (ps, entry) -> {
+                    ps.setInt(1, scores.filmId(entry));
+                    ps.setInt(2, scores.userId(entry));
+                    ps.setInt(3, scores.score(entry));
+                });
+        jdbcTemplate.update("INSERT INTO film_stats (film_id, score_count, score_sum) " +
+                "SELECT film_id, COUNT(*), SUM(score) FROM film_score GROUP BY film_id");
+
+        context.getBean(LiveIdRegistry.class).reload();
+        userScoreMatrix = context.getBean(UserScoreMatrix.class);
+        userScoreMatrix.rebuild();
+        filmRatersIndex = context.getBean(FilmRatersIndex.class);
+        filmRatersIndex.rebuild();
+        similarityScorer = context.getBean(SimilarityScorer.class);
+        collaborativeFilteringService = context.getBean(CollaborativeFilteringService.class);
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, String sql, int rows, RowBinder binder) {
+        for (int from = 0; from < rows; from += BATCH_SIZE) {
+            int start = from;
+            int size = Math.min(BATCH_SIZE, rows - from);
+
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    binder.bind(ps, start + i);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+
+    private static void feed(RowSource source, RowCallbackHandler handler) {
+        int[] row = new int[3];
+        ResultSet resultSet = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    if ("getInt".equals(method.getName()) && args[0] instanceof String) {
+                        switch ((String) args[0]) {
+                            case "user_id":
+                                return row[0];
+                            case "film_id":
+                                return row[1];
+                            case "score":
+                                return row[2];
+                            default:
+                                break;
+                        }
+                    }
+
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        source.forEach((userId, filmId, score) -> {
+            row[0] = userId;
+            row[1] = filmId;
+            row[2] = score;
+
+            try {
+                handler.processRow(resultSet);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static List<Film> toFilms(Collection<Integer> filmIds) {
+        return filmIds.stream()
+                .map(filmId -> Film.builder().id(filmId).build())
+                .collect(Collectors.toList());
+    }
+
+    private interface RowBinder {
+        void bind(PreparedStatement ps, int row) throws SQLException;
+    }
+
+    private interface RowSource {
+        void forEach(SyntheticScores.RowConsumer consumer);
+    }
+}
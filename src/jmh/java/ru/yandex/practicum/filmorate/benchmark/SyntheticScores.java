@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class SyntheticScores {
+    private final int users;
+    private final int films;
+    private final int[] userIds;
+    private final int[] filmIds;
+    private final byte[] scores;
+
+    private SyntheticScores(int users, int films, int[] userIds, int[] filmIds, byte[] scores) {
+        this.users = users;
+        this.films = films;
+        this.userIds = userIds;
+        this.filmIds = filmIds;
+        this.scores = scores;
+    }
+
+    public static SyntheticScores generate(int users, int films, double density, long seed) {
+        int perUser = Math.max(1, (int) Math.round(films * density));
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] userIds = new int[users * perUser];
+        int[] filmIds = new int[users * perUser];
+        byte[] scores = new byte[users * perUser];
+        int[] row = new int[perUser];
+        int size = 0;
+
+        for (int user = 0; user < users; user++) {
+            for (int i = 0; i < perUser; i++) {
+                double popularity = random.nextDouble();
+
+                row[i] = 1 + (int) (films * popularity * popularity);
+            }
+
+            Arrays.sort(row);
+
+            for (int i = 0; i < perUser; i++) {
+                if (i == 0 || row[i] != row[i - 1]) {
+                    userIds[size] = user + 1;
+                    filmIds[size] = row[i];
+                    scores[size++] = (byte) (1 + random.nextInt(10));
+                }
+            }
+        }
+
+        return new SyntheticScores(users, films, Arrays.copyOf(userIds, size),
+                Arrays.copyOf(filmIds, size), Arrays.copyOf(scores, size));
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getFilms() {
+        return films;
+    }
+
+    public int size() {
+        return filmIds.length;
+    }
+
+    public int userId(int entry) {
+        return userIds[entry];
+    }
+
+    public int filmId(int entry) {
+        return filmIds[entry];
+    }
+
+    public int score(int entry) {
+        return scores[entry];
+    }
+
+    public void forEachByUser(RowConsumer consumer) {
+        for (int entry = 0; entry < filmIds.length; entry++) {
+            consumer.accept(userIds[entry], filmIds[entry], scores[entry]);
+        }
+    }
+
+    public void forEachByFilm(RowConsumer consumer) {
+        int[] filmOffsets = new int[films + 2];
+
+        for (int filmId : filmIds) {
+            filmOffsets[filmId + 1]++;
+        }
+
+        for (int filmId = 1; filmId < filmOffsets.length; filmId++) {
+            filmOffsets[filmId] += filmOffsets[filmId - 1];
+        }
+
+        int[] next = Arrays.copyOf(filmOffsets, filmOffsets.length);
+        int[] entries = new int[filmIds.length];
+
+        for (int entry = 0; entry < filmIds.length; entry++) {
+            entries[next[filmIds[entry]]++] = entry;
+        }
+
+        for (int entry : entries) {
+            consumer.accept(userIds[entry], filmIds[entry], scores[entry]);
+        }
+    }
+
+    public interface RowConsumer {
+        void accept(int userId, int filmId, int score);
+    }
+}
@@ -1,7 +1,12 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,12 +16,20 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.DateValidationException;
 import ru.yandex.practicum.filmorate.exception.ScoreValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.model.ScoreImportResult;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.recommendation.ItemBasedRecommendationService;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -26,11 +39,52 @@ import java.util.Optional;
 @Slf4j
 @RequiredArgsConstructor
 public class FilmController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     private final FilmService service;
+    private final ObjectMapper objectMapper;
+    private final ItemBasedRecommendationService itemBasedRecommendationService;
 
     @GetMapping
-    public List<Film> getFilms() {
-        return service.getFilms();
+    public ResponseEntity<List<Film>> getFilms(
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "cursor", required = false) String cursor
+    ) {
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(service.getFilms());
+        }
+
+        Page<Film> page = service.getFilmsPage(cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        if (page.getNext() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNext());
+        }
+
+        return response.body(page.getItems());
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        ObjectWriter writer = objectMapper.writer();
+
+        StreamingResponseBody body = outputStream -> {
+            service.exportFilms(films -> {
+                try {
+                    for (Film film : films) {
+                        outputStream.write(writer.writeValueAsBytes(film));
+                        outputStream.write('\n');
+                    }
+
+                    outputStream.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{filmId}")
@@ -38,6 +92,14 @@ public class FilmController {
         return service.getFilmById(id);
     }
 
+    @GetMapping("/{filmId}/similar")
+    public List<Film> getSimilarFilms(
+            @PathVariable(value = "filmId") Integer id,
+            @RequestParam(value = "count", defaultValue = "10", required = false) Integer count
+    ) {
+        return itemBasedRecommendationService.getSimilarFilms(id, count);
+    }
+
     @GetMapping("/popular")
     public List<Film> getTopFilmsByScores(
             @RequestParam(value = "count", defaultValue = "10", required = false) Integer count,
@@ -55,6 +117,11 @@ public class FilmController {
         return service.getTopCommonFilms(userId, friendId);
     }
 
+    @GetMapping("/common/group")
+    public List<Film> getTopGroupCommonFilms(@RequestParam(value = "userIds") List<Integer> userIds) {
+        return service.getTopCommonFilms(userIds);
+    }
+
     @PutMapping("/{filmId}/score/{userId}")
     public void addScoreToFilm(
             @PathVariable(value = "filmId") Integer filmId,
@@ -75,6 +142,22 @@ public class FilmController {
         service.addScoreToFilm(filmId, userId, score);
     }
 
+    @PostMapping(value = "/scores/bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ScoreImportResult importScores(InputStream body) throws IOException {
+        try (MappingIterator<FilmScore> scores = objectMapper.readerFor(FilmScore.class).readValues(body)) {
+            return service.importScores(scores);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException) {
+                log.warn("Клиент передал некорректный пакет оценок: {}", e.getMessage());
+
+                throw new IllegalArgumentException("Некорректный формат пакета оценок: " + e.getCause().getMessage());
+            }
+
+            throw e;
+        }
+    }
+
     @DeleteMapping("/{filmId}/score/{userId}")
     public void deleteScoreFromFilm(
             @PathVariable(value = "filmId") Integer filmId,
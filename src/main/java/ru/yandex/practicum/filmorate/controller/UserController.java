@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,9 +11,12 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.UserEvent;
+import ru.yandex.practicum.filmorate.service.FriendSuggestionService;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.service.recommendation.RecommedationService;
 
@@ -25,12 +29,28 @@ import java.util.Optional;
 @Slf4j
 @RequiredArgsConstructor
 public class UserController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     private final UserService userService;
     private final RecommedationService recommedationService;
+    private final FriendSuggestionService friendSuggestionService;
 
     @GetMapping
-    public List<User> getUsers() {
-        return userService.getUsers();
+    public ResponseEntity<List<User>> getUsers(
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "cursor", required = false) String cursor
+    ) {
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(userService.getUsers());
+        }
+
+        Page<User> page = userService.getUsersPage(cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        if (page.getNext() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNext());
+        }
+
+        return response.body(page.getItems());
     }
 
     @GetMapping("/{userId}")
@@ -79,6 +99,14 @@ public class UserController {
         return userService.getCommonFriends(userId, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(
+            @PathVariable(value = "id") Integer userId,
+            @RequestParam(value = "count", defaultValue = "10", required = false) Integer count
+    ) {
+        return friendSuggestionService.getSuggestions(userId, count);
+    }
+
     @GetMapping("/{id}/recommendations")
     public List<Film> getRecommendations(@PathVariable(value = "id") Integer userId) {
         return recommedationService.getRecommendation(userId);
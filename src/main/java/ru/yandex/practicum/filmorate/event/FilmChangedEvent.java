@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import ru.yandex.practicum.filmorate.model.Film;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class FilmChangedEvent {
+    private final Film film;
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class FilmDeletedEvent {
+    private final int filmId;
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.event;
+
+public interface FilmEventListener {
+    default void onFilmChanged(FilmChangedEvent event) {
+    }
+
+    default void onFilmDeleted(FilmDeletedEvent event) {
+    }
+
+    default void onFilmScoreChanged(FilmScoreChangedEvent event) {
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+@Component
+@Slf4j
+public class FilmEventPublisher {
+    private final List<FilmEventListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void subscribe(FilmEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void publish(FilmChangedEvent event) {
+        notifyListeners(event, listener -> listener.onFilmChanged(event));
+    }
+
+    public void publish(FilmDeletedEvent event) {
+        notifyListeners(event, listener -> listener.onFilmDeleted(event));
+    }
+
+    public void publish(FilmScoreChangedEvent event) {
+        notifyListeners(event, listener -> listener.onFilmScoreChanged(event));
+    }
+
+    private void notifyListeners(Object event, Consumer<FilmEventListener> action) {
+        for (FilmEventListener listener : listeners) {
+            try {
+                action.accept(listener);
+            } catch (RuntimeException e) {
+                log.error("Ошибка обработки события {} в {}", event, listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class FilmScoreChangedEvent {
+    public static final int NO_SCORE = 0;
+
+    private final int filmId;
+    private final int userId;
+    private final int oldScore;
+    private final int newScore;
+
+    public boolean isAdded() {
+        return oldScore == NO_SCORE && newScore != NO_SCORE;
+    }
+
+    public boolean isRemoved() {
+        return oldScore != NO_SCORE && newScore == NO_SCORE;
+    }
+}
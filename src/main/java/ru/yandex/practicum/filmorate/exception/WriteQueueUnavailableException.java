@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.exception;
+
+public class WriteQueueUnavailableException extends RuntimeException {
+    public WriteQueueUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Comparator;
+
+@Getter
+@AllArgsConstructor
+public class Neighbour {
+    public static final Comparator<Neighbour> MOST_SIMILAR_FIRST = Comparator
+            .comparingDouble(Neighbour::getSimilarity).reversed()
+            .thenComparingInt(Neighbour::getUserId);
+
+    private final int userId;
+    private final double similarity;
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ScoreImportError {
+    private final long index;
+    private final Integer filmId;
+    private final Integer userId;
+    private final String error;
+}
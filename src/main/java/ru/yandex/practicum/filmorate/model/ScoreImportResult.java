@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class ScoreImportResult {
+    private final long received;
+    private final long imported;
+    private final long rejected;
+    private final List<ScoreImportError> errors;
+}
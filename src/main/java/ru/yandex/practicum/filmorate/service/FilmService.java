@@ -2,23 +2,50 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.model.ScoreImportError;
+import ru.yandex.practicum.filmorate.model.ScoreImportResult;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dao.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.storage.dao.PageCursor;
 import ru.yandex.practicum.filmorate.storage.dao.film.FilmStorage;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class FilmService {
+    private static final int MAX_REPORTED_IMPORT_ERRORS = 1000;
+
     private final FilmStorage filmStorage;
+    private final ScoreWriteBehindQueue scoreWriteBehindQueue;
+    private final LiveIdRegistry liveIds;
+    @Value("${filmorate.export.chunk-size:500}")
+    private int exportChunkSize;
+    @Value("${filmorate.import.batch-size:1000}")
+    private int importBatchSize;
 
     public List<Film> getFilms() {
         return filmStorage.getFilms();
     }
 
+    public Page<Film> getFilmsPage(String cursor, Integer limit) {
+        return filmStorage.getFilmsPage(cursor, PageCursor.checkLimit(limit));
+    }
+
+    public void exportFilms(Consumer<List<Film>> chunkConsumer) {
+        filmStorage.exportFilms(exportChunkSize, chunkConsumer);
+    }
+
     public Film getFilmById(int id) {
         return filmStorage.getFilmById(id);
     }
@@ -40,10 +67,52 @@ public class FilmService {
     }
 
     public void addScoreToFilm(int filmId, int userId, int score) {
+        if (scoreWriteBehindQueue.isEnabled()) {
+            liveIds.films().require(filmId);
+            liveIds.users().require(userId);
+            scoreWriteBehindQueue.enqueueScore(filmId, userId, score);
+
+            return;
+        }
+
         filmStorage.addScoreToFilm(filmId, userId, score);
     }
 
+    public ScoreImportResult importScores(Iterator<FilmScore> scores) {
+        List<FilmScore> batch = new ArrayList<>(importBatchSize);
+        List<ScoreImportError> reportedErrors = new ArrayList<>();
+        long received = 0;
+        long rejected = 0;
+
+        while (scores.hasNext()) {
+            batch.add(scores.next());
+            received++;
+
+            if (batch.size() == importBatchSize || !scores.hasNext()) {
+                List<ScoreImportError> errors = filmStorage.addScores(batch, received - batch.size());
+
+                rejected += errors.size();
+                errors.stream()
+                        .limit(MAX_REPORTED_IMPORT_ERRORS - reportedErrors.size())
+                        .forEach(reportedErrors::add);
+                batch.clear();
+            }
+        }
+
+        log.info("Импорт оценок завершен: получено {}, отклонено {}", received, rejected);
+
+        return new ScoreImportResult(received, received - rejected, rejected, reportedErrors);
+    }
+
     public void deleteScoreFromFilm(int filmId, int userId) {
+        if (scoreWriteBehindQueue.isEnabled()) {
+            liveIds.films().require(filmId);
+            liveIds.users().require(userId);
+            scoreWriteBehindQueue.enqueueScoreDeletion(filmId, userId);
+
+            return;
+        }
+
         filmStorage.deleteScoreFromFilm(filmId, userId);
     }
 
@@ -66,4 +135,8 @@ public class FilmService {
     public List<Film> getTopCommonFilms(int userId1, int userId2) {
         return filmStorage.getTopCommonFilms(userId1, userId2);
     }
+
+    public List<Film> getTopCommonFilms(Collection<Integer> userIds) {
+        return filmStorage.getTopCommonFilms(userIds);
+    }
 }
\ No newline at end of file
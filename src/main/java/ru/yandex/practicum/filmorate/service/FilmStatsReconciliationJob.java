@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.dao.MutationLocks;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmCache;
+import ru.yandex.practicum.filmorate.storage.dao.film.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.dao.film.stats.FilmStatsStorage;
+
+import java.util.List;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FilmStatsReconciliationJob {
+    private final FilmStatsStorage filmStatsStorage;
+    private final FilmCache filmCache;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final MutationLocks mutationLocks;
+
+    @Scheduled(initialDelayString = "${filmorate.film-stats.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${filmorate.film-stats.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        List<Integer> correctedFilmIds = filmStatsStorage.reconcileFilmStats();
+
+        if (correctedFilmIds.isEmpty()) {
+            return;
+        }
+
+        log.warn("Исправлена статистика оценок фильмов {}, рейтинг популярности будет обновлен",
+                correctedFilmIds);
+
+        correctedFilmIds.forEach(filmCache::invalidate);
+        mutationLocks.filmScores().withLocks(correctedFilmIds, () -> {
+            popularityLeaderboard.refresh(correctedFilmIds);
+
+            return correctedFilmIds;
+        });
+    }
+}
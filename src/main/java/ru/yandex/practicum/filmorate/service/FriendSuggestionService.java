@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dao.IntDoubleHashMap;
+import ru.yandex.practicum.filmorate.storage.dao.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.storage.dao.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.dao.user.UserStorage;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+@Service
+@Slf4j
+public class FriendSuggestionService {
+    private final FriendGraph friendGraph;
+    private final UserStorage userStorage;
+    private final LiveIdRegistry liveIds;
+    private final int maxFanOut;
+    private final int maxResults;
+    private final long timeBudgetNanos;
+
+    public FriendSuggestionService(FriendGraph friendGraph, UserStorage userStorage, LiveIdRegistry liveIds,
+                                   @Value("${filmorate.friends.suggestions.max-fan-out:1000}") int maxFanOut,
+                                   @Value("${filmorate.friends.suggestions.max-results:50}") int maxResults,
+                                   @Value("${filmorate.friends.suggestions.time-budget:100ms}") Duration timeBudget) {
+        this.friendGraph = friendGraph;
+        this.userStorage = userStorage;
+        this.liveIds = liveIds;
+        this.maxFanOut = maxFanOut;
+        this.maxResults = maxResults;
+        this.timeBudgetNanos = timeBudget.toNanos();
+    }
+
+    public List<User> getSuggestions(int userId, int count) {
+        log.info("Получен запрос на подбор друзей для пользователя с id = {}", userId);
+
+        if (count <= 0) {
+            throw new IllegalArgumentException("Количество предлагаемых друзей должно быть положительным");
+        }
+
+        liveIds.users().require(userId);
+
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        int[] friends = friendGraph.getFriends(userId);
+        int[] followers = friendGraph.getFollowers(userId);
+        int[] expandedFriends = friendGraph.sampleFriends(userId, maxFanOut);
+        IntDoubleHashMap mutualFriends = new IntDoubleHashMap(expandedFriends.length * 2);
+        int expanded = 0;
+
+        for (int friendId : expandedFriends) {
+            if (System.nanoTime() > deadline) {
+                break;
+            }
+
+            for (int candidateId : friendGraph.sampleFriends(friendId, maxFanOut)) {
+                if (candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0
+                        && Arrays.binarySearch(followers, candidateId) < 0) {
+                    mutualFriends.add(candidateId, 1);
+                }
+            }
+
+            expanded++;
+        }
+
+        if (expanded < expandedFriends.length) {
+            log.warn("Подбор друзей для пользователя с id = {} остановлен по времени, обработано {} из {} друзей",
+                    userId, expanded, expandedFriends.length);
+        }
+
+        log.info("Для пользователя с id = {} найдено {} кандидатов в друзья", userId, mutualFriends.size());
+
+        return userStorage.getUsersByIds(mutualFriends.topKeys(Math.min(count, maxResults)));
+    }
+}
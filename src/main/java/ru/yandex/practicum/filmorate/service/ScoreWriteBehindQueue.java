@@ -0,0 +1,253 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.WriteQueueUnavailableException;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+import ru.yandex.practicum.filmorate.model.ScoreImportError;
+import ru.yandex.practicum.filmorate.storage.dao.BatchUtils;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmStorage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+@Slf4j
+public class ScoreWriteBehindQueue {
+    private final FilmStorage filmStorage;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+    private final Timer flushTimer;
+    private final Counter coalescedCounter;
+    private final Counter failedCounter;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushRequested = lock.newCondition();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private Map<Long, FilmScore> pending = new LinkedHashMap<>();
+    private boolean running;
+    private Thread writer;
+
+    public ScoreWriteBehindQueue(FilmStorage filmStorage, MeterRegistry meterRegistry,
+                                 @Value("${filmorate.scores.write-behind.enabled:false}") boolean enabled,
+                                 @Value("${filmorate.scores.write-behind.capacity:10000}") int capacity,
+                                 @Value("${filmorate.scores.write-behind.batch-size:500}") int batchSize,
+                                 @Value("${filmorate.scores.write-behind.flush-interval:200ms}") Duration flushInterval,
+                                 @Value("${filmorate.scores.write-behind.offer-timeout:1s}") Duration offerTimeout) {
+        this.filmStorage = filmStorage;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+
+        Gauge.builder("filmorate.scores.write_behind.queue_depth", this, ScoreWriteBehindQueue::getQueueDepth)
+                .register(meterRegistry);
+        flushTimer = Timer.builder("filmorate.scores.write_behind.flush").register(meterRegistry);
+        coalescedCounter = Counter.builder("filmorate.scores.write_behind.coalesced").register(meterRegistry);
+        failedCounter = Counter.builder("filmorate.scores.write_behind.failed").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            running = true;
+        } finally {
+            lock.unlock();
+        }
+
+        writer = new Thread(this::runWriter, "score-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+
+        log.info("Отложенная запись оценок включена: capacity = {}, batchSize = {}, flushInterval = {}", capacity,
+                batchSize, flushInterval);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            running = false;
+            flushRequested.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        writer.join(offerTimeout.toMillis() + flushInterval.toMillis());
+        flush();
+
+        log.info("Отложенная запись оценок остановлена");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enqueueScore(int filmId, int userId, int score) {
+        enqueue(new FilmScore(filmId, userId, score));
+    }
+
+    public void enqueueScoreDeletion(int filmId, int userId) {
+        enqueue(new FilmScore(filmId, userId, null));
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Long, FilmScore> batch;
+
+            lock.lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            flushTimer.record(() -> write(batch.values()));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void enqueue(FilmScore score) {
+        long key = ((long) score.getFilmId() << 32) | (score.getUserId() & 0xFFFFFFFFL);
+
+        lock.lock();
+        try {
+            long remainingNanos = offerTimeout.toNanos();
+
+            while (running && !pending.containsKey(key) && pending.size() >= capacity) {
+                if (remainingNanos <= 0) {
+                    log.warn("Очередь отложенной записи оценок переполнена, размер = {}", pending.size());
+
+                    throw new WriteQueueUnavailableException("Очередь записи оценок переполнена, повторите запрос " +
+                            "позже");
+                }
+
+                remainingNanos = notFull.awaitNanos(remainingNanos);
+            }
+
+            if (!running) {
+                throw new WriteQueueUnavailableException("Очередь записи оценок остановлена");
+            }
+
+            if (pending.put(key, score) != null) {
+                coalescedCounter.increment();
+            }
+
+            if (pending.size() >= batchSize) {
+                flushRequested.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new WriteQueueUnavailableException("Ожидание места в очереди записи оценок прервано");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            lock.lock();
+            try {
+                if (!running) {
+                    return;
+                }
+
+                if (pending.size() < batchSize) {
+                    flushRequested.awaitNanos(flushInterval.toNanos());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("Ошибка фоновой записи оценок", e);
+            }
+        }
+    }
+
+    private void write(Collection<FilmScore> scores) {
+        List<FilmScore> upserts = new ArrayList<>();
+        List<FilmScore> deletions = new ArrayList<>();
+
+        for (FilmScore score : scores) {
+            if (score.getScore() == null) {
+                deletions.add(score);
+            } else {
+                upserts.add(score);
+            }
+        }
+
+        for (List<FilmScore> batch : BatchUtils.partition(upserts, batchSize)) {
+            try {
+                List<ScoreImportError> errors = filmStorage.addScores(batch, 0);
+
+                errors.forEach(error -> log.warn("Отложенная оценка фильму с id = {} от пользователя с id = {} " +
+                        "отклонена: {}", error.getFilmId(), error.getUserId(), error.getError()));
+                failedCounter.increment(errors.size());
+            } catch (RuntimeException e) {
+                log.error("Не удалось записать пакет из {} оценок", batch.size(), e);
+                failedCounter.increment(batch.size());
+            }
+        }
+
+        for (List<FilmScore> batch : BatchUtils.partition(deletions, batchSize)) {
+            try {
+                filmStorage.deleteScores(batch);
+            } catch (RuntimeException e) {
+                log.error("Не удалось удалить пакет из {} оценок", batch.size(), e);
+                failedCounter.increment(batch.size());
+            }
+        }
+    }
+}
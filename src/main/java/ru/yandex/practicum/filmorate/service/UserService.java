@@ -3,8 +3,10 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.UserEvent;
+import ru.yandex.practicum.filmorate.storage.dao.PageCursor;
 import ru.yandex.practicum.filmorate.storage.dao.user.UserStorage;
 
 import java.util.List;
@@ -19,6 +21,10 @@ public class UserService {
         return userStorage.getUsers();
     }
 
+    public Page<User> getUsersPage(String cursor, Integer limit) {
+        return userStorage.getUsersPage(cursor, PageCursor.checkLimit(limit));
+    }
+
     public User getUserById(int id) {
         return userStorage.getUserById(id);
     }
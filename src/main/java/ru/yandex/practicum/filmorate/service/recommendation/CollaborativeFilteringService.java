@@ -1,121 +1,75 @@
 package ru.yandex.practicum.filmorate.service.recommendation;
 
-import lombok.RequiredArgsConstructor;
-import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.Neighbour;
+import ru.yandex.practicum.filmorate.storage.dao.IntDoubleHashMap;
 import ru.yandex.practicum.filmorate.storage.dao.film.FilmStorage;
-import ru.yandex.practicum.filmorate.storage.dao.user.UserStorage;
+import ru.yandex.practicum.filmorate.storage.dao.film.ScoreVector;
+import ru.yandex.practicum.filmorate.storage.dao.film.UserScoreMatrix;
+import ru.yandex.practicum.filmorate.storage.dao.user.UserDao;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
-public class CollaborativeFilteringService {
-    private final UserStorage userStorage;
+@Slf4j
+public class CollaborativeFilteringService implements RecommendationStrategy {
+    private final UserScoreMatrix userScoreMatrix;
     private final FilmStorage filmStorage;
-    private final Map<Pair, Double> similarityCache = new HashMap<>();
-
-    public List<Film> getRecommendationByUsers(Integer userId) {
-        List<Integer> userFilms = userStorage.getLikedFilmsId(userId);
-
-        if (userFilms.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        List<Integer> userIds = getSortedUsersBySimilarity(userId);
-        if (userIds.isEmpty()) {
-
-            return Collections.emptyList();
-        }
-
-        Set<Integer> recommendationIds = new HashSet<>(userStorage.getLikedFilmsId(userIds.get(0)));
-
-        userFilms.forEach(recommendationIds::remove);
-        List<Film> recommendations = new ArrayList<>();
-        recommendationIds.forEach(el -> recommendations.add(filmStorage.getFilmById(el)));
-
-        return recommendations;
+    private final UserNeighborsJob userNeighborsJob;
+    private final int neighboursCount;
+    private final int maxResults;
+
+    public CollaborativeFilteringService(UserScoreMatrix userScoreMatrix, FilmStorage filmStorage,
+                                         UserNeighborsJob userNeighborsJob,
+                                         @Value("${filmorate.recommendations.knn.k:20}") int neighboursCount,
+                                         @Value("${filmorate.recommendations.knn.max-results:20}") int maxResults) {
+        this.userScoreMatrix = userScoreMatrix;
+        this.filmStorage = filmStorage;
+        this.userNeighborsJob = userNeighborsJob;
+        this.neighboursCount = neighboursCount;
+        this.maxResults = maxResults;
     }
 
-    private List<Integer> getSortedUsersBySimilarity(Integer userId) {
-        List<User> users = userStorage.getUsers().stream()
-                .filter(x -> !x.equals(userStorage.getUserById(userId)))
-                .collect(Collectors.toList());
-
-        List<Integer> userIds = new ArrayList<>();
-
-        for (User user : users) {
-            int otherUserId = user.getId();
-            double similarity = similarityCache.getOrDefault(new Pair(userId, otherUserId), -1.0);
-            if (similarity == -1.0) {
-                similarity = findHowSimilar(userId, otherUserId);
-                similarityCache.put(new Pair(userId, otherUserId), similarity);
-            }
-
-            if (similarity != 0) {
-                userIds.add(otherUserId);
-            }
-        }
-
-        userIds.sort(Comparator.comparing(id -> similarityCache.get(new Pair(userId, id))));
+    @Override
+    public String getName() {
+        return "user";
+    }
 
-        return userIds;
+    @Override
+    public List<Film> getRecommendations(int userId) {
+        return getRecommendationByUsers(userId);
     }
 
-    private double findHowSimilar(Integer targetUser, Integer otherUser) {
-        Map<Integer, Integer> targetUserScores = userStorage.getScoreVectorByUserId(targetUser);
-        List<Integer> sortedKeysForTarget = new ArrayList<>(targetUserScores.keySet());
-        Collections.sort(sortedKeysForTarget);
-        List<Integer> sortedValuesForTarget = new ArrayList<>();
-        for (Integer key : sortedKeysForTarget) {
-            sortedValuesForTarget.add(targetUserScores.get(key));
-        }
+    public List<Film> getRecommendationByUsers(Integer userId) {
+        List<Neighbour> neighbours = userNeighborsJob.getNeighbours(userId);
 
-        Map<Integer, Integer> otherUserScores = userStorage.getScoreVectorByUserId(otherUser);
-        List<Integer> sortedKeysForOtherUser = new ArrayList<>(otherUserScores.keySet());
-        Collections.sort(sortedKeysForOtherUser);
-        List<Integer> sortedValuesForOtherUser = new ArrayList<>();
-        for (Integer key : sortedKeysForOtherUser) {
-            sortedValuesForOtherUser.add(otherUserScores.get(key));
+        if (neighbours.isEmpty()) {
+            return Collections.emptyList();
         }
 
-        if (!sortedKeysForTarget.equals(sortedKeysForOtherUser)) {
-            return 0.0;
-        }
+        ScoreVector userScores = userScoreMatrix.getScoreVector(userId);
+        IntDoubleHashMap weightedScores = new IntDoubleHashMap(userScores.size() * 2);
 
-        return findCosineSimiliraty(sortedValuesForTarget, sortedValuesForOtherUser);
-    }
+        for (Neighbour neighbour : neighbours.subList(0, Math.min(neighboursCount, neighbours.size()))) {
+            ScoreVector neighbourScores = userScoreMatrix.getScoreVector(neighbour.getUserId());
 
-    private double findCosineSimiliraty(List<Integer> vectorA, List<Integer> vectorB) {
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
+            for (int position = 0; position < neighbourScores.size(); position++) {
+                int score = neighbourScores.score(position);
+                int filmId = neighbourScores.filmId(position);
 
-        for (int i = 0; i < vectorA.size(); i++) {
-            dotProduct += vectorA.get(i) * vectorB.get(i);
-            normA += Math.pow(vectorA.get(i), 2);
-            normB += Math.pow(vectorB.get(i), 2);
+                if (score >= UserDao.GOOD_SCORE && userScores.indexOf(filmId) < 0) {
+                    weightedScores.add(filmId, neighbour.getSimilarity() * score);
+                }
+            }
         }
 
-        normA = Math.sqrt(normA);
-        normB = Math.sqrt(normB);
-
-        return dotProduct / (normA * normB);
-    }
+        log.info("Для пользователя с id = {} по {} соседям найдено {} фильмов", userId,
+                Math.min(neighboursCount, neighbours.size()), weightedScores.size());
 
-    @Value
-    private static class Pair {
-        int id;
-        int otherId;
+        return filmStorage.getFilmsByIds(weightedScores.topKeys(maxResults));
     }
 }
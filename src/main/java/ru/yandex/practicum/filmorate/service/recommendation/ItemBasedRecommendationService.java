@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.service.recommendation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.film.ScoreVector;
+import ru.yandex.practicum.filmorate.storage.dao.film.UserScoreMatrix;
+import ru.yandex.practicum.filmorate.storage.dao.user.UserDao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ItemBasedRecommendationService implements RecommendationStrategy {
+    private final UserScoreMatrix userScoreMatrix;
+    private final ItemSimilarityIndex itemSimilarityIndex;
+    private final FilmStorage filmStorage;
+
+    @Value("${filmorate.recommendations.item.max-results:20}")
+    private int maxResults;
+
+    @Override
+    public String getName() {
+        return "item";
+    }
+
+    @Override
+    public List<Film> getRecommendations(int userId) {
+        ScoreVector scores = userScoreMatrix.getScoreVector(userId);
+        Map<Integer, Double> candidates = new HashMap<>();
+
+        for (int position = 0; position < scores.size(); position++) {
+            int score = scores.score(position);
+
+            if (score < UserDao.GOOD_SCORE) {
+                continue;
+            }
+
+            ItemSimilarityIndex.ItemNeighbours neighbours = itemSimilarityIndex.getNeighbours(scores.filmId(position));
+
+            for (int i = 0; i < neighbours.size(); i++) {
+                int filmId = neighbours.filmId(i);
+
+                if (scores.indexOf(filmId) < 0) {
+                    candidates.merge(filmId, neighbours.similarity(i) * score, Double::sum);
+                }
+            }
+        }
+
+        log.info("Для пользователя с id = {} найдено {} фильмов по похожим фильмам", userId, candidates.size());
+
+        return filmStorage.getFilmsByIds(rank(candidates, maxResults));
+    }
+
+    public List<Film> getSimilarFilms(int filmId, int count) {
+        filmStorage.getFilmById(filmId);
+
+        ItemSimilarityIndex.ItemNeighbours neighbours = itemSimilarityIndex.getNeighbours(filmId);
+        List<Integer> filmIds = new ArrayList<>();
+
+        for (int i = 0; i < neighbours.size() && i < count; i++) {
+            filmIds.add(neighbours.filmId(i));
+        }
+
+        return filmStorage.getFilmsByIds(filmIds);
+    }
+
+    private static List<Integer> rank(Map<Integer, Double> candidates, int limit) {
+        return candidates.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,207 @@
+package ru.yandex.practicum.filmorate.service.recommendation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.FilmDeletedEvent;
+import ru.yandex.practicum.filmorate.event.FilmEventListener;
+import ru.yandex.practicum.filmorate.event.FilmEventPublisher;
+import ru.yandex.practicum.filmorate.event.FilmScoreChangedEvent;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmRatersIndex;
+import ru.yandex.practicum.filmorate.storage.dao.film.ScoreVector;
+import ru.yandex.practicum.filmorate.storage.dao.film.UserScoreMatrix;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Component
+@Slf4j
+public class ItemSimilarityIndex implements FilmEventListener {
+    private static final ItemNeighbours NO_NEIGHBOURS = new ItemNeighbours(new int[0], new double[0]);
+
+    private final UserScoreMatrix userScoreMatrix;
+    private final FilmRatersIndex filmRatersIndex;
+    private final FilmEventPublisher filmEventPublisher;
+    private final int neighboursPerFilm;
+    private final AtomicBoolean stale = new AtomicBoolean(true);
+    private volatile Map<Integer, ItemNeighbours> neighbours = Collections.emptyMap();
+
+    public ItemSimilarityIndex(UserScoreMatrix userScoreMatrix, FilmRatersIndex filmRatersIndex,
+                               FilmEventPublisher filmEventPublisher,
+                               @Value("${filmorate.recommendations.item.neighbours-per-film:50}")
+                               int neighboursPerFilm) {
+        this.userScoreMatrix = userScoreMatrix;
+        this.filmRatersIndex = filmRatersIndex;
+        this.filmEventPublisher = filmEventPublisher;
+        this.neighboursPerFilm = neighboursPerFilm;
+    }
+
+    @PostConstruct
+    public void init() {
+        filmEventPublisher.subscribe(this);
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.recommendations.item.rebuild-interval-ms:600000}",
+            fixedDelayString = "${filmorate.recommendations.item.rebuild-interval-ms:600000}")
+    public void rebuildIfStale() {
+        if (stale.get()) {
+            rebuild();
+        }
+    }
+
+    public synchronized void rebuild() {
+        log.info("Получен запрос на построение индекса похожих фильмов");
+
+        stale.set(false);
+
+        int[] filmIds = filmRatersIndex.getFilmIds();
+        Map<Integer, Double> userMeans = new HashMap<>();
+        double[] norms = new double[filmIds.length];
+
+        for (int i = 0; i < filmIds.length; i++) {
+            for (int userId : filmRatersIndex.getRaters(filmIds[i])) {
+                ScoreVector vector = userScoreMatrix.getScoreVector(userId);
+                double deviation = vector.scoreOf(filmIds[i]) - userMeans.computeIfAbsent(userId,
+                        id -> mean(vector));
+
+                norms[i] += deviation * deviation;
+            }
+        }
+
+        Map<Integer, ItemNeighbours> built = new HashMap<>();
+        double[] dotProducts = new double[filmIds.length];
+        int[] touched = new int[filmIds.length];
+        boolean[] seen = new boolean[filmIds.length];
+
+        for (int i = 0; i < filmIds.length; i++) {
+            if (norms[i] == 0) {
+                continue;
+            }
+
+            int touchedCount = 0;
+
+            for (int userId : filmRatersIndex.getRaters(filmIds[i])) {
+                ScoreVector vector = userScoreMatrix.getScoreVector(userId);
+                double mean = userMeans.computeIfAbsent(userId, id -> mean(vector));
+                double deviation = vector.scoreOf(filmIds[i]) - mean;
+
+                for (int position = 0; position < vector.size(); position++) {
+                    int j = Arrays.binarySearch(filmIds, vector.filmId(position));
+
+                    if (j < 0 || j == i) {
+                        continue;
+                    }
+
+                    if (!seen[j]) {
+                        seen[j] = true;
+                        touched[touchedCount++] = j;
+                    }
+
+                    dotProducts[j] += deviation * (vector.score(position) - mean);
+                }
+            }
+
+            PriorityQueue<Integer> top = new PriorityQueue<>((first, second) -> compareSimilarity(
+                    dotProducts[first] / Math.sqrt(norms[first]), dotProducts[second] / Math.sqrt(norms[second]),
+                    filmIds[first], filmIds[second]));
+
+            for (int t = 0; t < touchedCount; t++) {
+                int j = touched[t];
+
+                if (norms[j] > 0 && dotProducts[j] > 0) {
+                    top.add(j);
+
+                    if (top.size() > neighboursPerFilm) {
+                        top.poll();
+                    }
+                }
+            }
+
+            int[] neighbourIds = new int[top.size()];
+            double[] similarities = new double[top.size()];
+
+            for (int position = top.size() - 1; position >= 0; position--) {
+                int j = top.poll();
+
+                neighbourIds[position] = filmIds[j];
+                similarities[position] = dotProducts[j] / (Math.sqrt(norms[i]) * Math.sqrt(norms[j]));
+            }
+
+            if (neighbourIds.length > 0) {
+                built.put(filmIds[i], new ItemNeighbours(neighbourIds, similarities));
+            }
+
+            for (int t = 0; t < touchedCount; t++) {
+                dotProducts[touched[t]] = 0;
+                seen[touched[t]] = false;
+            }
+        }
+
+        neighbours = built;
+
+        log.info("Индекс похожих фильмов построен, фильмов с соседями = {}", built.size());
+    }
+
+    public ItemNeighbours getNeighbours(int filmId) {
+        return neighbours.getOrDefault(filmId, NO_NEIGHBOURS);
+    }
+
+    @Override
+    public void onFilmScoreChanged(FilmScoreChangedEvent event) {
+        stale.set(true);
+    }
+
+    @Override
+    public void onFilmDeleted(FilmDeletedEvent event) {
+        stale.set(true);
+    }
+
+    private static int compareSimilarity(double first, double second, int firstFilmId, int secondFilmId) {
+        int bySimilarity = Double.compare(first, second);
+
+        return bySimilarity != 0 ? bySimilarity : Integer.compare(secondFilmId, firstFilmId);
+    }
+
+    private static double mean(ScoreVector vector) {
+        if (vector.isEmpty()) {
+            return 0;
+        }
+
+        long sum = 0;
+
+        for (int position = 0; position < vector.size(); position++) {
+            sum += vector.score(position);
+        }
+
+        return (double) sum / vector.size();
+    }
+
+    public static class ItemNeighbours {
+        private final int[] filmIds;
+        private final double[] similarities;
+
+        private ItemNeighbours(int[] filmIds, double[] similarities) {
+            this.filmIds = filmIds;
+            this.similarities = similarities;
+        }
+
+        public int size() {
+            return filmIds.length;
+        }
+
+        public int filmId(int position) {
+            return filmIds[position];
+        }
+
+        public double similarity(int position) {
+            return similarities[position];
+        }
+    }
+}
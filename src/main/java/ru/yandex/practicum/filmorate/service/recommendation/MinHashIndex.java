@@ -0,0 +1,249 @@
+package ru.yandex.practicum.filmorate.service.recommendation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.FilmEventListener;
+import ru.yandex.practicum.filmorate.event.FilmEventPublisher;
+import ru.yandex.practicum.filmorate.event.FilmScoreChangedEvent;
+import ru.yandex.practicum.filmorate.storage.dao.film.ScoreVector;
+import ru.yandex.practicum.filmorate.storage.dao.film.UserScoreMatrix;
+import ru.yandex.practicum.filmorate.storage.dao.user.UserDao;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.recommendations.lsh.enabled", havingValue = "true")
+public class MinHashIndex implements FilmEventListener {
+    private static final long PRIME = (1L << 31) - 1;
+    private static final int[] EMPTY = new int[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserScoreMatrix userScoreMatrix;
+    private final FilmEventPublisher filmEventPublisher;
+    private final int bands;
+    private final int rows;
+    private final long[] multipliers;
+    private final long[] increments;
+    private final ConcurrentMap<Integer, int[]> signatures = new ConcurrentHashMap<>();
+    private final List<ConcurrentMap<Long, Set<Integer>>> buckets = new ArrayList<>();
+
+    public MinHashIndex(JdbcTemplate jdbcTemplate, UserScoreMatrix userScoreMatrix,
+                        FilmEventPublisher filmEventPublisher,
+                        @Value("${filmorate.recommendations.lsh.bands:16}") int bands,
+                        @Value("${filmorate.recommendations.lsh.rows:4}") int rows,
+                        @Value("${filmorate.recommendations.lsh.seed:42}") long seed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userScoreMatrix = userScoreMatrix;
+        this.filmEventPublisher = filmEventPublisher;
+        this.bands = bands;
+        this.rows = rows;
+
+        Random random = new Random(seed);
+
+        multipliers = new long[bands * rows];
+        increments = new long[bands * rows];
+
+        for (int i = 0; i < multipliers.length; i++) {
+            multipliers[i] = 1 + (long) (random.nextDouble() * (PRIME - 1));
+            increments[i] = (long) (random.nextDouble() * PRIME);
+        }
+
+        for (int band = 0; band < bands; band++) {
+            buckets.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        filmEventPublisher.subscribe(this);
+        rebuild();
+    }
+
+    public void rebuild() {
+        log.info("Получен запрос на построение индекса MinHash");
+
+        Map<Integer, List<Integer>> likedFilms = new HashMap<>();
+
+        jdbcTemplate.query("SELECT user_id, film_id FROM film_score WHERE score >= ?",
+                rs -> {
+                    likedFilms.computeIfAbsent(rs.getInt("user_id"), id -> new ArrayList<>())
+                            .add(rs.getInt("film_id"));
+                }, UserDao.GOOD_SCORE);
+
+        synchronized (this) {
+            signatures.clear();
+            buckets.forEach(Map::clear);
+
+            likedFilms.forEach((userId, filmIds) -> updateLikedFilms(userId, filmIds.stream()
+                    .mapToInt(Integer::intValue)
+                    .toArray()));
+        }
+
+        log.info("Индекс MinHash построен, пользователей = {}", signatures.size());
+    }
+
+    public synchronized void updateLikedFilms(int userId, int[] likedFilmIds) {
+        if (likedFilmIds.length == 0) {
+            replaceSignature(userId, null);
+
+            return;
+        }
+
+        int[] signature = new int[multipliers.length];
+
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        for (int filmId : likedFilmIds) {
+            addToSignature(signature, filmId);
+        }
+
+        replaceSignature(userId, signature);
+    }
+
+    public int[] findCandidates(int userId) {
+        int[] signature = signatures.get(userId);
+
+        if (signature == null) {
+            return EMPTY;
+        }
+
+        BitSet candidates = new BitSet();
+
+        for (int band = 0; band < bands; band++) {
+            Set<Integer> bucket = buckets.get(band).get(bandKey(signature, band));
+
+            if (bucket != null) {
+                bucket.forEach(candidates::set);
+            }
+        }
+
+        candidates.clear(userId);
+
+        return candidates.stream().toArray();
+    }
+
+    public double estimateSimilarity(int userId, int otherUserId) {
+        int[] signature = signatures.get(userId);
+        int[] otherSignature = signatures.get(otherUserId);
+
+        if (signature == null || otherSignature == null) {
+            return 0;
+        }
+
+        int equal = 0;
+
+        for (int i = 0; i < signature.length; i++) {
+            if (signature[i] == otherSignature[i]) {
+                equal++;
+            }
+        }
+
+        return (double) equal / signature.length;
+    }
+
+    public boolean contains(int userId) {
+        return signatures.containsKey(userId);
+    }
+
+    public int size() {
+        return signatures.size();
+    }
+
+    @Override
+    public synchronized void onFilmScoreChanged(FilmScoreChangedEvent event) {
+        boolean wasLiked = event.getOldScore() >= UserDao.GOOD_SCORE;
+        boolean isLiked = event.getNewScore() >= UserDao.GOOD_SCORE;
+
+        if (isLiked && !wasLiked) {
+            addLikedFilm(event.getUserId(), event.getFilmId());
+        } else if (wasLiked && !isLiked) {
+            ScoreVector scores = userScoreMatrix.getScoreVector(event.getUserId());
+            int[] likedFilmIds = new int[scores.size()];
+            int liked = 0;
+
+            for (int position = 0; position < scores.size(); position++) {
+                if (scores.score(position) >= UserDao.GOOD_SCORE) {
+                    likedFilmIds[liked++] = scores.filmId(position);
+                }
+            }
+
+            updateLikedFilms(event.getUserId(), Arrays.copyOf(likedFilmIds, liked));
+        }
+    }
+
+    private synchronized void addLikedFilm(int userId, int filmId) {
+        int[] current = signatures.get(userId);
+        int[] signature;
+
+        if (current == null) {
+            signature = new int[multipliers.length];
+            Arrays.fill(signature, Integer.MAX_VALUE);
+        } else {
+            signature = current.clone();
+        }
+
+        addToSignature(signature, filmId);
+        replaceSignature(userId, signature);
+    }
+
+    private void addToSignature(int[] signature, int filmId) {
+        for (int i = 0; i < signature.length; i++) {
+            int hash = (int) ((multipliers[i] * filmId + increments[i]) % PRIME);
+
+            if (hash < signature[i]) {
+                signature[i] = hash;
+            }
+        }
+    }
+
+    private void replaceSignature(int userId, int[] signature) {
+        int[] previous = signature == null ? signatures.remove(userId) : signatures.put(userId, signature);
+
+        for (int band = 0; band < bands; band++) {
+            ConcurrentMap<Long, Set<Integer>> bandBuckets = buckets.get(band);
+
+            if (previous != null) {
+                long previousKey = bandKey(previous, band);
+
+                if (signature != null && previousKey == bandKey(signature, band)) {
+                    continue;
+                }
+
+                bandBuckets.computeIfPresent(previousKey, (key, users) -> {
+                    users.remove(userId);
+
+                    return users.isEmpty() ? null : users;
+                });
+            }
+
+            if (signature != null) {
+                bandBuckets.computeIfAbsent(bandKey(signature, band), key -> ConcurrentHashMap.newKeySet())
+                        .add(userId);
+            }
+        }
+    }
+
+    private long bandKey(int[] signature, int band) {
+        long key = 1125899906842597L;
+
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            key = 31 * key + signature[i];
+        }
+
+        return key;
+    }
+}
@@ -0,0 +1,160 @@
+package ru.yandex.practicum.filmorate.service.recommendation;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.FilmEventListener;
+import ru.yandex.practicum.filmorate.event.FilmEventPublisher;
+import ru.yandex.practicum.filmorate.event.FilmScoreChangedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.dao.user.neighbors.UserNeighborsStorage;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+public class RecommendationCache implements FilmEventListener {
+    private final RecommendationStrategy strategy;
+    private final LoadingCache<Integer, List<Integer>> cache;
+    private final UserNeighborsStorage userNeighborsStorage;
+    private final FilmEventPublisher filmEventPublisher;
+    private final Set<Integer> changedUsers = ConcurrentHashMap.newKeySet();
+    private final Timer refreshTimer;
+
+    public RecommendationCache(List<RecommendationStrategy> strategies,
+                               @Value("${filmorate.recommendations.strategy:user}") String strategyName,
+                               @Value("${filmorate.cache.recommendations.maximum-size:10000}") long maximumSize,
+                               @Value("${filmorate.cache.recommendations.expire-after-write:30m}")
+                               Duration expireAfterWrite,
+                               @Value("${filmorate.cache.recommendations.refresh-after-write:5m}")
+                               Duration refreshAfterWrite,
+                               @Value("${filmorate.cache.recommendations.refresh-threads:2}") int refreshThreads,
+                               @Value("${filmorate.cache.recommendations.refresh-queue-capacity:1000}")
+                               int refreshQueueCapacity,
+                               UserNeighborsStorage userNeighborsStorage, MeterRegistry meterRegistry,
+                               FilmEventPublisher filmEventPublisher) {
+        Map<String, RecommendationStrategy> strategiesByName = strategies.stream()
+                .collect(Collectors.toMap(RecommendationStrategy::getName, Function.identity()));
+
+        this.strategy = strategiesByName.get(strategyName);
+
+        if (strategy == null) {
+            throw new IllegalStateException(String.format("Неизвестная стратегия рекомендаций %s, доступны %s",
+                    strategyName, strategiesByName.keySet()));
+        }
+
+        log.info("Выбрана стратегия рекомендаций {}", strategyName);
+
+        this.userNeighborsStorage = userNeighborsStorage;
+        this.filmEventPublisher = filmEventPublisher;
+        refreshTimer = Timer.builder("filmorate.recommendations.cache.refresh").register(meterRegistry);
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .refreshAfterWrite(refreshAfterWrite)
+                .executor(refreshExecutor(refreshThreads, refreshQueueCapacity))
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public List<Integer> load(Integer userId) {
+                        return computeRecommendedFilmIds(userId);
+                    }
+
+                    @Override
+                    public List<Integer> reload(Integer userId, List<Integer> filmIds) {
+                        return refreshTimer.record(() -> load(userId));
+                    }
+                });
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "recommendations");
+    }
+
+    @PostConstruct
+    public void init() {
+        filmEventPublisher.subscribe(this);
+    }
+
+    public List<Integer> get(int userId) {
+        return cache.get(userId);
+    }
+
+    public void invalidateUser(int userId) {
+        log.debug("Рекомендации пользователя с id = {} удалены из кэша", userId);
+
+        cache.invalidate(userId);
+    }
+
+    public void markStale(int userId) {
+        if (cache.asMap().containsKey(userId)) {
+            cache.refresh(userId);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.cache.recommendations.neighbours-check-interval-ms:5000}",
+            fixedDelayString = "${filmorate.cache.recommendations.neighbours-check-interval-ms:5000}")
+    public void markNeighboursStale() {
+        List<Integer> changed = new ArrayList<>();
+
+        for (Integer userId : changedUsers) {
+            if (changedUsers.remove(userId)) {
+                changed.add(userId);
+            }
+        }
+
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        List<Integer> affected = userNeighborsStorage.getUsersWithNeighbours(changed);
+
+        log.info("Рекомендации {} пользователей помечены устаревшими после изменения оценок их соседей",
+                affected.size());
+
+        affected.forEach(this::markStale);
+    }
+
+    @Override
+    public void onFilmScoreChanged(FilmScoreChangedEvent event) {
+        invalidateUser(event.getUserId());
+        changedUsers.add(event.getUserId());
+    }
+
+    private List<Integer> computeRecommendedFilmIds(int userId) {
+        return strategy.getRecommendations(userId).stream()
+                .map(Film::getId)
+                .distinct()
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    private static ThreadPoolExecutor refreshExecutor(int threads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "recommendations-refresh-" + threadNumber.incrementAndGet());
+
+                    thread.setDaemon(true);
+
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
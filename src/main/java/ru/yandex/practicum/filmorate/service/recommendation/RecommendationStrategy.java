@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.service.recommendation;
+
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.List;
+
+public interface RecommendationStrategy {
+    String getName();
+
+    List<Film> getRecommendations(int userId);
+}
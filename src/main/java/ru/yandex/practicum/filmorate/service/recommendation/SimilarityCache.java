@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.service.recommendation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.dao.film.UserScoreMatrix;
+
+import java.util.function.DoubleSupplier;
+
+@Component
+public class SimilarityCache {
+    private final Cache<Long, Entry> cache;
+    private final Counter staleCounter;
+    private final UserScoreMatrix userScoreMatrix;
+
+    public SimilarityCache(@Value("${filmorate.cache.similarity.maximum-size:100000}") long maximumSize,
+                           MeterRegistry meterRegistry, UserScoreMatrix userScoreMatrix) {
+        this.userScoreMatrix = userScoreMatrix;
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        staleCounter = meterRegistry.counter("filmorate.similarity.stale");
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "similarity");
+    }
+
+    public double getSimilarity(int userId, int otherUserId, DoubleSupplier calculator) {
+        int first = Math.min(userId, otherUserId);
+        int second = Math.max(userId, otherUserId);
+        long firstVersion = userScoreMatrix.getVersion(first);
+        long secondVersion = userScoreMatrix.getVersion(second);
+        long key = pairKey(first, second);
+        Entry entry = cache.getIfPresent(key);
+
+        if (entry != null) {
+            if (entry.firstVersion == firstVersion && entry.secondVersion == secondVersion) {
+                return entry.similarity;
+            }
+
+            staleCounter.increment();
+        }
+
+        double similarity = calculator.getAsDouble();
+
+        cache.put(key, new Entry(similarity, firstVersion, secondVersion));
+
+        return similarity;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static long pairKey(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private static class Entry {
+        private final double similarity;
+        private final long firstVersion;
+        private final long secondVersion;
+
+        private Entry(double similarity, long firstVersion, long secondVersion) {
+            this.similarity = similarity;
+            this.firstVersion = firstVersion;
+            this.secondVersion = secondVersion;
+        }
+    }
+}
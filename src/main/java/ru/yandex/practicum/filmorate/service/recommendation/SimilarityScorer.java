@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate.service.recommendation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Neighbour;
+import ru.yandex.practicum.filmorate.storage.dao.film.UserScoreMatrix;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+@Component
+@Slf4j
+public class SimilarityScorer {
+    private final UserScoreMatrix userScoreMatrix;
+    private final SimilarityCache similarityCache;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+
+    public SimilarityScorer(UserScoreMatrix userScoreMatrix, SimilarityCache similarityCache,
+                            @Value("${filmorate.recommendations.parallelism:0}") int parallelism,
+                            @Value("${filmorate.recommendations.parallel-threshold:2048}") int parallelThreshold) {
+        this.userScoreMatrix = userScoreMatrix;
+        this.similarityCache = similarityCache;
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+                forkJoinPool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+                            .newThread(forkJoinPool);
+                    thread.setName("similarity-" + thread.getPoolIndex());
+
+                    return thread;
+                }, null, false);
+
+        log.info("Пул расчета сходства создан, параллелизм = {}", pool.getParallelism());
+    }
+
+    public List<Neighbour> findNearestNeighbours(int userId, int[] candidates, int count) {
+        if (candidates.length == 0 || count <= 0) {
+            return Collections.emptyList();
+        }
+
+        ScoringTask task = new ScoringTask(userId, candidates, 0, candidates.length, count);
+        TopNeighbours top = candidates.length <= parallelThreshold ? task.compute() : pool.invoke(task);
+
+        return top.toSortedList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    private double similarity(int userId, int otherUserId) {
+        return similarityCache.getSimilarity(userId, otherUserId,
+                () -> userScoreMatrix.cosineSimilarity(userId, otherUserId));
+    }
+
+    private class ScoringTask extends RecursiveTask<TopNeighbours> {
+        private final int userId;
+        private final int[] candidates;
+        private final int from;
+        private final int to;
+        private final int count;
+
+        private ScoringTask(int userId, int[] candidates, int from, int to, int count) {
+            this.userId = userId;
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+
+        @Override
+        protected TopNeighbours compute() {
+            if (to - from <= parallelThreshold) {
+                TopNeighbours top = new TopNeighbours(count);
+
+                for (int i = from; i < to; i++) {
+                    double similarity = similarity(userId, candidates[i]);
+
+                    if (similarity != 0) {
+                        top.offer(new Neighbour(candidates[i], similarity));
+                    }
+                }
+
+                return top;
+            }
+
+            int middle = (from + to) >>> 1;
+            ScoringTask left = new ScoringTask(userId, candidates, from, middle, count);
+            ScoringTask right = new ScoringTask(userId, candidates, middle, to, count);
+
+            left.fork();
+
+            TopNeighbours top = right.compute();
+            top.merge(left.join());
+
+            return top;
+        }
+    }
+
+    private static class TopNeighbours {
+        private final int capacity;
+        private final PriorityQueue<Neighbour> heap;
+
+        private TopNeighbours(int capacity) {
+            this.capacity = capacity;
+            heap = new PriorityQueue<>(Neighbour.MOST_SIMILAR_FIRST.reversed());
+        }
+
+        private void offer(Neighbour neighbour) {
+            if (heap.size() < capacity) {
+                heap.add(neighbour);
+            } else if (Neighbour.MOST_SIMILAR_FIRST.compare(neighbour, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(neighbour);
+            }
+        }
+
+        private void merge(TopNeighbours other) {
+            other.heap.forEach(this::offer);
+        }
+
+        private List<Neighbour> toSortedList() {
+            List<Neighbour> neighbours = new ArrayList<>(heap);
+
+            neighbours.sort(Neighbour.MOST_SIMILAR_FIRST);
+
+            return neighbours;
+        }
+    }
+}
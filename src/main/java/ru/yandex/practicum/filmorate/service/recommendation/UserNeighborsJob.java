@@ -0,0 +1,211 @@
+package ru.yandex.practicum.filmorate.service.recommendation;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.FilmEventListener;
+import ru.yandex.practicum.filmorate.event.FilmEventPublisher;
+import ru.yandex.practicum.filmorate.event.FilmScoreChangedEvent;
+import ru.yandex.practicum.filmorate.model.Neighbour;
+import ru.yandex.practicum.filmorate.storage.dao.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmRatersIndex;
+import ru.yandex.practicum.filmorate.storage.dao.film.UserScoreMatrix;
+import ru.yandex.practicum.filmorate.storage.dao.user.neighbors.NeighborJobCheckpoint;
+import ru.yandex.practicum.filmorate.storage.dao.user.neighbors.UserNeighborsStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+public class UserNeighborsJob implements FilmEventListener {
+    private static final String FULL_PASS_JOB = "full";
+
+    private final UserNeighborsStorage userNeighborsStorage;
+    private final UserScoreMatrix userScoreMatrix;
+    private final FilmRatersIndex filmRatersIndex;
+    private final SimilarityScorer similarityScorer;
+    private final MinHashIndex minHashIndex;
+    private final LiveIdRegistry liveIds;
+    private final FilmEventPublisher filmEventPublisher;
+    private final int neighboursCount;
+    private final int chunkSize;
+    private final Set<Integer> dirtyUsers = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> changedUsers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean fullPassRunning = new AtomicBoolean();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+
+    public UserNeighborsJob(UserNeighborsStorage userNeighborsStorage, UserScoreMatrix userScoreMatrix,
+                            FilmRatersIndex filmRatersIndex, SimilarityScorer similarityScorer,
+                            ObjectProvider<MinHashIndex> minHashIndex, LiveIdRegistry liveIds,
+                            FilmEventPublisher filmEventPublisher, MeterRegistry meterRegistry,
+                            @Value("${filmorate.recommendations.neighbours:50}") int neighboursCount,
+                            @Value("${filmorate.recommendations.neighbours-job.chunk-size:500}") int chunkSize) {
+        this.userNeighborsStorage = userNeighborsStorage;
+        this.userScoreMatrix = userScoreMatrix;
+        this.filmRatersIndex = filmRatersIndex;
+        this.similarityScorer = similarityScorer;
+        this.minHashIndex = minHashIndex.getIfAvailable();
+        this.liveIds = liveIds;
+        this.filmEventPublisher = filmEventPublisher;
+        this.neighboursCount = neighboursCount;
+        this.chunkSize = chunkSize;
+
+        Gauge.builder("filmorate.recommendations.neighbours.processed", processed, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("filmorate.recommendations.neighbours.total", total, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("filmorate.recommendations.neighbours.dirty", dirtyUsers, Set::size)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        filmEventPublisher.subscribe(this);
+    }
+
+    public List<Neighbour> getNeighbours(int userId) {
+        if (dirtyUsers.remove(userId) || !userNeighborsStorage.isRefreshed(userId)) {
+            refresh(List.of(userId));
+        }
+
+        return userNeighborsStorage.getNeighbours(userId, neighboursCount);
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.recommendations.neighbours-job.full-initial-delay-ms:60000}",
+            fixedDelayString = "${filmorate.recommendations.neighbours-job.full-interval-ms:86400000}")
+    public void runFullPass() {
+        if (!fullPassRunning.compareAndSet(false, true)) {
+            log.warn("Пересчет соседей всех пользователей уже выполняется");
+
+            return;
+        }
+
+        try {
+            NeighborJobCheckpoint checkpoint = userNeighborsStorage.getCheckpoint(FULL_PASS_JOB);
+            int lastUserId = checkpoint == null ? 0 : checkpoint.getLastUserId();
+
+            processed.set(checkpoint == null ? 0 : checkpoint.getProcessed());
+            total.set(userNeighborsStorage.countUsers());
+
+            log.info("Начат пересчет соседей пользователей после пользователя с id = {}, обработано {} из {}",
+                    lastUserId, processed.get(), total.get());
+
+            List<Integer> chunk = userNeighborsStorage.getUserIdsAfter(lastUserId, chunkSize);
+
+            while (!chunk.isEmpty()) {
+                refresh(chunk);
+
+                lastUserId = chunk.get(chunk.size() - 1);
+                processed.addAndGet(chunk.size());
+                userNeighborsStorage.saveCheckpoint(FULL_PASS_JOB, lastUserId, processed.get());
+
+                log.info("Соседи пересчитаны для {} из {} пользователей", processed.get(), total.get());
+
+                chunk = userNeighborsStorage.getUserIdsAfter(lastUserId, chunkSize);
+            }
+
+            userNeighborsStorage.deleteCheckpoint(FULL_PASS_JOB);
+
+            log.info("Пересчет соседей пользователей завершен, обработано {}", processed.get());
+        } finally {
+            fullPassRunning.set(false);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.recommendations.neighbours-job.dirty-interval-ms:5000}",
+            fixedDelayString = "${filmorate.recommendations.neighbours-job.dirty-interval-ms:5000}")
+    public void refreshDirty() {
+        List<Integer> changed = drain(changedUsers);
+
+        if (!changed.isEmpty()) {
+            dirtyUsers.addAll(userNeighborsStorage.getUsersWithNeighbours(changed));
+        }
+
+        List<Integer> dirty = drain(dirtyUsers);
+
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        log.info("Получен запрос на пересчет соседей {} измененных пользователей", dirty.size());
+
+        for (int from = 0; from < dirty.size(); from += chunkSize) {
+            List<Integer> chunk = dirty.subList(from, Math.min(from + chunkSize, dirty.size()));
+
+            try {
+                refresh(chunk);
+            } catch (RuntimeException e) {
+                log.error("Не удалось пересчитать соседей пользователей {}", chunk, e);
+
+                dirtyUsers.addAll(chunk);
+            }
+        }
+    }
+
+    @Override
+    public void onFilmScoreChanged(FilmScoreChangedEvent event) {
+        dirtyUsers.add(event.getUserId());
+        changedUsers.add(event.getUserId());
+
+        for (int coRaterId : filmRatersIndex.findCandidates(event.getUserId(), new int[]{event.getFilmId()})) {
+            dirtyUsers.add(coRaterId);
+        }
+    }
+
+    private void refresh(Collection<Integer> userIds) {
+        Map<Integer, List<Neighbour>> neighboursByUserId = new HashMap<>();
+
+        for (int userId : liveIds.users().findExisting(userIds)) {
+            neighboursByUserId.put(userId, similarityScorer.findNearestNeighbours(userId, findCandidates(userId),
+                    neighboursCount));
+        }
+
+        Set<Integer> neighbourIds = neighboursByUserId.values().stream()
+                .flatMap(List::stream)
+                .map(Neighbour::getUserId)
+                .collect(Collectors.toSet());
+        Set<Integer> existingNeighbourIds = new HashSet<>(liveIds.users().findExisting(neighbourIds));
+
+        neighboursByUserId.replaceAll((userId, neighbours) -> neighbours.stream()
+                .filter(neighbour -> existingNeighbourIds.contains(neighbour.getUserId()))
+                .collect(Collectors.toList()));
+
+        userNeighborsStorage.replaceNeighbours(neighboursByUserId);
+    }
+
+    private int[] findCandidates(int userId) {
+        if (minHashIndex != null && minHashIndex.contains(userId)) {
+            return minHashIndex.findCandidates(userId);
+        }
+
+        return filmRatersIndex.findCandidates(userId, userScoreMatrix.getScoreVector(userId).filmIds());
+    }
+
+    private static List<Integer> drain(Set<Integer> source) {
+        List<Integer> drained = new ArrayList<>();
+
+        for (Integer userId : source) {
+            if (source.remove(userId)) {
+                drained.add(userId);
+            }
+        }
+
+        return drained;
+    }
+}
@@ -0,0 +1,178 @@
+package ru.yandex.practicum.filmorate.service.recommendation.mf;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class FactorModel {
+    private static final int MAGIC = 0x464D4631;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 8 * Integer.BYTES + 2 * Long.BYTES;
+
+    private final int factors;
+    private final float globalMean;
+    private final TrainingFingerprint fingerprint;
+    private final IntBuffer userIds;
+    private final IntBuffer filmIds;
+    private final FloatBuffer userBiases;
+    private final FloatBuffer filmBiases;
+    private final FloatBuffer userFactors;
+    private final FloatBuffer filmFactors;
+
+    private FactorModel(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IllegalStateException("Неизвестный формат снимка модели рекомендаций");
+        }
+
+        factors = buffer.getInt(2 * Integer.BYTES);
+        int users = buffer.getInt(3 * Integer.BYTES);
+        int films = buffer.getInt(4 * Integer.BYTES);
+        globalMean = buffer.getFloat(5 * Integer.BYTES);
+        fingerprint = new TrainingFingerprint(buffer.getLong(6 * Integer.BYTES),
+                buffer.getLong(6 * Integer.BYTES + Long.BYTES), buffer.getInt(6 * Integer.BYTES + 2 * Long.BYTES),
+                buffer.getInt(7 * Integer.BYTES + 2 * Long.BYTES));
+
+        int offset = HEADER_BYTES;
+        userIds = slice(buffer, offset, users).asIntBuffer();
+        offset += users * Integer.BYTES;
+        filmIds = slice(buffer, offset, films).asIntBuffer();
+        offset += films * Integer.BYTES;
+        userBiases = slice(buffer, offset, users).asFloatBuffer();
+        offset += users * Float.BYTES;
+        filmBiases = slice(buffer, offset, films).asFloatBuffer();
+        offset += films * Float.BYTES;
+        userFactors = slice(buffer, offset, users * factors).asFloatBuffer();
+        offset += users * factors * Float.BYTES;
+        filmFactors = slice(buffer, offset, films * factors).asFloatBuffer();
+    }
+
+    public static FactorModel map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            return new FactorModel(buffer);
+        }
+    }
+
+    public static void write(Path path, TrainedFactors trained) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+
+        try (OutputStream file = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(trained.getFactors());
+            out.writeInt(trained.getUserIds().length);
+            out.writeInt(trained.getFilmIds().length);
+            out.writeFloat(trained.getGlobalMean());
+            out.writeLong(trained.getFingerprint().getScoreCount());
+            out.writeLong(trained.getFingerprint().getScoreSum());
+            out.writeInt(trained.getFingerprint().getMaxUserId());
+            out.writeInt(trained.getFingerprint().getMaxFilmId());
+
+            for (int userId : trained.getUserIds()) {
+                out.writeInt(userId);
+            }
+
+            for (int filmId : trained.getFilmIds()) {
+                out.writeInt(filmId);
+            }
+
+            writeFloats(out, trained.getUserBiases());
+            writeFloats(out, trained.getFilmBiases());
+            writeFloats(out, trained.getUserFactors());
+            writeFloats(out, trained.getFilmFactors());
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+
+            throw e;
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int getFactors() {
+        return factors;
+    }
+
+    public TrainingFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getFilmCount() {
+        return filmIds.limit();
+    }
+
+    public int filmId(int filmIndex) {
+        return filmIds.get(filmIndex);
+    }
+
+    public int userIndex(int userId) {
+        return binarySearch(userIds, userId);
+    }
+
+    public int filmIndex(int filmId) {
+        return binarySearch(filmIds, filmId);
+    }
+
+    public float predict(int userIndex, int filmIndex) {
+        float prediction = globalMean + userBiases.get(userIndex) + filmBiases.get(filmIndex);
+        int userOffset = userIndex * factors;
+        int filmOffset = filmIndex * factors;
+
+        for (int f = 0; f < factors; f++) {
+            prediction += userFactors.get(userOffset + f) * filmFactors.get(filmOffset + f);
+        }
+
+        return prediction;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int values) {
+        return buffer.duplicate()
+                .position(offset)
+                .limit(offset + values * Integer.BYTES)
+                .slice();
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+    }
+
+    private static int binarySearch(IntBuffer ids, int id) {
+        int low = 0;
+        int high = ids.limit() - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = ids.get(middle);
+
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+}
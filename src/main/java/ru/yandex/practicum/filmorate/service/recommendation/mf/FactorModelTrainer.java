@@ -0,0 +1,209 @@
+package ru.yandex.practicum.filmorate.service.recommendation.mf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@Component
+@Slf4j
+public class FactorModelTrainer {
+    private final JdbcTemplate jdbcTemplate;
+    private final int factors;
+    private final int epochs;
+    private final float learningRate;
+    private final float regularization;
+    private final int threads;
+    private final long seed;
+
+    public FactorModelTrainer(JdbcTemplate jdbcTemplate,
+                              @Value("${filmorate.recommendations.mf.factors:32}") int factors,
+                              @Value("${filmorate.recommendations.mf.epochs:20}") int epochs,
+                              @Value("${filmorate.recommendations.mf.learning-rate:0.01}") float learningRate,
+                              @Value("${filmorate.recommendations.mf.regularization:0.05}") float regularization,
+                              @Value("${filmorate.recommendations.mf.threads:0}") int threads,
+                              @Value("${filmorate.recommendations.mf.seed:42}") long seed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.factors = factors;
+        this.epochs = epochs;
+        this.learningRate = learningRate;
+        this.regularization = regularization;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.seed = seed;
+    }
+
+    public TrainedFactors train() {
+        ScoresCollector scores = new ScoresCollector();
+
+        jdbcTemplate.query("SELECT user_id, film_id, score FROM film_score", scores);
+
+        if (scores.size == 0) {
+            log.info("Оценок для обучения модели рекомендаций нет");
+
+            return null;
+        }
+
+        int[] userIds = distinctSorted(scores.userIds, scores.size);
+        int[] filmIds = distinctSorted(scores.filmIds, scores.size);
+        int[] userIndexes = new int[scores.size];
+        int[] filmIndexes = new int[scores.size];
+        long sum = 0;
+
+        for (int i = 0; i < scores.size; i++) {
+            userIndexes[i] = Arrays.binarySearch(userIds, scores.userIds[i]);
+            filmIndexes[i] = Arrays.binarySearch(filmIds, scores.filmIds[i]);
+            sum += scores.scores[i];
+        }
+
+        float globalMean = (float) sum / scores.size;
+        Random random = new Random(seed);
+        float[] userBiases = new float[userIds.length];
+        float[] filmBiases = new float[filmIds.length];
+        float[] userFactors = randomFactors(random, userIds.length);
+        float[] filmFactors = randomFactors(random, filmIds.length);
+        int[] order = new int[scores.size];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        log.info("Начато обучение модели рекомендаций, пользователей = {}, фильмов = {}, оценок = {}",
+                userIds.length, filmIds.length, scores.size);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            for (int epoch = 0; epoch < epochs; epoch++) {
+                shuffle(order, random);
+
+                int chunk = (order.length + threads - 1) / threads;
+                List<Callable<Object>> tasks = new ArrayList<>();
+
+                for (int from = 0; from < order.length; from += chunk) {
+                    int start = from;
+                    int end = Math.min(from + chunk, order.length);
+
+                    tasks.add(() -> {
+                        for (int i = start; i < end; i++) {
+                            int rating = order[i];
+
+                            step(userIndexes[rating], filmIndexes[rating], scores.scores[rating], globalMean,
+                                    userBiases, filmBiases, userFactors, filmFactors);
+                        }
+
+                        return null;
+                    });
+                }
+
+                for (Future<Object> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException("Обучение модели рекомендаций прервано", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Не удалось обучить модель рекомендаций", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log.info("Обучение модели рекомендаций завершено, эпох = {}", epochs);
+
+        return new TrainedFactors(factors, globalMean, userIds, filmIds, userBiases, filmBiases, userFactors,
+                filmFactors, new TrainingFingerprint(scores.size, sum, userIds[userIds.length - 1],
+                filmIds[filmIds.length - 1]));
+    }
+
+    public TrainingFingerprint currentFingerprint() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) AS score_count, COALESCE(SUM(score), 0) AS score_sum, " +
+                        "COALESCE(MAX(user_id), 0) AS max_user_id, COALESCE(MAX(film_id), 0) AS max_film_id " +
+                        "FROM film_score", (rs, rowNum) -> new TrainingFingerprint(rs.getLong("score_count"),
+                        rs.getLong("score_sum"), rs.getInt("max_user_id"), rs.getInt("max_film_id")));
+    }
+
+    private void step(int user, int film, float score, float globalMean, float[] userBiases, float[] filmBiases,
+                      float[] userFactors, float[] filmFactors) {
+        int userOffset = user * factors;
+        int filmOffset = film * factors;
+        float prediction = globalMean + userBiases[user] + filmBiases[film];
+
+        for (int f = 0; f < factors; f++) {
+            prediction += userFactors[userOffset + f] * filmFactors[filmOffset + f];
+        }
+
+        float error = score - prediction;
+
+        userBiases[user] += learningRate * (error - regularization * userBiases[user]);
+        filmBiases[film] += learningRate * (error - regularization * filmBiases[film]);
+
+        for (int f = 0; f < factors; f++) {
+            float userFactor = userFactors[userOffset + f];
+            float filmFactor = filmFactors[filmOffset + f];
+
+            userFactors[userOffset + f] += learningRate * (error * filmFactor - regularization * userFactor);
+            filmFactors[filmOffset + f] += learningRate * (error * userFactor - regularization * filmFactor);
+        }
+    }
+
+    private float[] randomFactors(Random random, int rows) {
+        float[] values = new float[rows * factors];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) (random.nextGaussian() * 0.1);
+        }
+
+        return values;
+    }
+
+    private static void shuffle(int[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int value = values[i];
+
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    private static int[] distinctSorted(int[] values, int size) {
+        return Arrays.stream(values, 0, size)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    private static class ScoresCollector implements RowCallbackHandler {
+        private int[] userIds = new int[64];
+        private int[] filmIds = new int[64];
+        private byte[] scores = new byte[64];
+        private int size;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            if (size == userIds.length) {
+                userIds = Arrays.copyOf(userIds, size * 2);
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+
+            userIds[size] = rs.getInt("user_id");
+            filmIds[size] = rs.getInt("film_id");
+            scores[size++] = (byte) rs.getInt("score");
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package ru.yandex.practicum.filmorate.service.recommendation.mf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.recommendation.RecommendationStrategy;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.film.ScoreVector;
+import ru.yandex.practicum.filmorate.storage.dao.film.UserScoreMatrix;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+@Service
+@Slf4j
+public class MatrixFactorizationRecommendationService implements RecommendationStrategy {
+    private final FactorModelTrainer factorModelTrainer;
+    private final UserScoreMatrix userScoreMatrix;
+    private final FilmStorage filmStorage;
+    private final Path snapshotPath;
+    private final int maxResults;
+    private final boolean enabled;
+    private volatile FactorModel model;
+
+    public MatrixFactorizationRecommendationService(FactorModelTrainer factorModelTrainer,
+                                                    UserScoreMatrix userScoreMatrix, FilmStorage filmStorage,
+                                                    @Value("${filmorate.recommendations.strategy:user}")
+                                                    String strategyName,
+                                                    @Value("${filmorate.recommendations.mf.snapshot-path:./db/mf-model.bin}")
+                                                    String snapshotPath,
+                                                    @Value("${filmorate.recommendations.mf.max-results:20}")
+                                                    int maxResults) {
+        this.factorModelTrainer = factorModelTrainer;
+        this.userScoreMatrix = userScoreMatrix;
+        this.filmStorage = filmStorage;
+        this.snapshotPath = Paths.get(snapshotPath);
+        this.maxResults = maxResults;
+        this.enabled = getName().equals(strategyName);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled || !Files.exists(snapshotPath)) {
+            return;
+        }
+
+        try {
+            FactorModel snapshot = FactorModel.map(snapshotPath);
+            TrainingFingerprint current = factorModelTrainer.currentFingerprint();
+
+            if (!snapshot.getFingerprint().equals(current)) {
+                log.warn("Снимок модели рекомендаций {} обучен на других данных: {}, текущие данные: {}, " +
+                        "снимок удален", snapshotPath, snapshot.getFingerprint(), current);
+
+                Files.deleteIfExists(snapshotPath);
+
+                return;
+            }
+
+            publish(snapshotPath, snapshot);
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось загрузить снимок модели рекомендаций {}", snapshotPath, e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.recommendations.mf.train-interval-ms:3600000}",
+            fixedDelayString = "${filmorate.recommendations.mf.train-interval-ms:3600000}")
+    public void train() {
+        if (!enabled) {
+            return;
+        }
+
+        trainAndPublish(snapshotPath);
+    }
+
+    public synchronized void trainAndPublish(Path path) {
+        TrainedFactors trained = factorModelTrainer.train();
+
+        if (trained == null) {
+            return;
+        }
+
+        try {
+            FactorModel.write(path, trained);
+            load(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void load(Path path) throws IOException {
+        publish(path, FactorModel.map(path));
+    }
+
+    private void publish(Path path, FactorModel loaded) {
+        model = loaded;
+
+        log.info("Загружен снимок модели рекомендаций {}, фильмов = {}, факторов = {}", path,
+                loaded.getFilmCount(), loaded.getFactors());
+    }
+
+    public float predict(int userId, int filmId) {
+        FactorModel current = model;
+
+        if (current == null) {
+            return Float.NaN;
+        }
+
+        int userIndex = current.userIndex(userId);
+        int filmIndex = current.filmIndex(filmId);
+
+        return userIndex < 0 || filmIndex < 0 ? Float.NaN : current.predict(userIndex, filmIndex);
+    }
+
+    @Override
+    public String getName() {
+        return "mf";
+    }
+
+    @Override
+    public List<Film> getRecommendations(int userId) {
+        FactorModel current = model;
+
+        if (current == null) {
+            log.info("Модель рекомендаций еще не обучена");
+
+            return Collections.emptyList();
+        }
+
+        int userIndex = current.userIndex(userId);
+
+        if (userIndex < 0) {
+            return Collections.emptyList();
+        }
+
+        ScoreVector scores = userScoreMatrix.getScoreVector(userId);
+        float[] predictions = new float[current.getFilmCount()];
+        PriorityQueue<Integer> top = new PriorityQueue<>((first, second) -> {
+            int byPrediction = Float.compare(predictions[first], predictions[second]);
+
+            return byPrediction != 0 ? byPrediction : Integer.compare(second, first);
+        });
+
+        for (int filmIndex = 0; filmIndex < predictions.length; filmIndex++) {
+            if (scores.indexOf(current.filmId(filmIndex)) >= 0) {
+                continue;
+            }
+
+            predictions[filmIndex] = current.predict(userIndex, filmIndex);
+            top.add(filmIndex);
+
+            if (top.size() > maxResults) {
+                top.poll();
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>();
+
+        while (!top.isEmpty()) {
+            ranked.add(current.filmId(top.poll()));
+        }
+
+        Collections.reverse(ranked);
+
+        log.info("Для пользователя с id = {} модель предсказала {} фильмов", userId, ranked.size());
+
+        return filmStorage.getFilmsByIds(ranked);
+    }
+}
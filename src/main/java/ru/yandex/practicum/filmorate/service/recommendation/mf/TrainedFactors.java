@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.service.recommendation.mf;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TrainedFactors {
+    private final int factors;
+    private final float globalMean;
+    private final int[] userIds;
+    private final int[] filmIds;
+    private final float[] userBiases;
+    private final float[] filmBiases;
+    private final float[] userFactors;
+    private final float[] filmFactors;
+    private final TrainingFingerprint fingerprint;
+}
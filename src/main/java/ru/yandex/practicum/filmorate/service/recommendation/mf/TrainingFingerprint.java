@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.service.recommendation.mf;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class TrainingFingerprint {
+    private final long scoreCount;
+    private final long scoreSum;
+    private final int maxUserId;
+    private final int maxFilmId;
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class BatchUtils {
+    public static final int IN_CLAUSE_BATCH_SIZE = 1000;
+
+    private BatchUtils() {
+
+    }
+
+    public static <T> List<List<T>> partition(Collection<T> values) {
+        return partition(values, IN_CLAUSE_BATCH_SIZE);
+    }
+
+    public static <T> List<List<T>> partition(Collection<T> values, int batchSize) {
+        List<List<T>> batches = new ArrayList<>();
+        List<T> current = new ArrayList<>(Math.min(batchSize, values.size()));
+
+        for (T value : values) {
+            current.add(value);
+
+            if (current.size() == batchSize) {
+                batches.add(current);
+                current = new ArrayList<>(batchSize);
+            }
+        }
+
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+
+        return batches;
+    }
+}
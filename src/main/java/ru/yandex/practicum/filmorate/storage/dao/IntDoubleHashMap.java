@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class IntDoubleHashMap {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private double[] values;
+    private boolean[] filled;
+    private int size;
+
+    public IntDoubleHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+
+        keys = new int[capacity];
+        values = new double[capacity];
+        filled = new boolean[capacity];
+    }
+
+    public void add(int key, double delta) {
+        int slot = findSlot(keys, filled, key);
+
+        if (filled[slot]) {
+            values[slot] += delta;
+
+            return;
+        }
+
+        keys[slot] = key;
+        values[slot] = delta;
+        filled[slot] = true;
+
+        if (++size > keys.length * LOAD_FACTOR) {
+            grow();
+        }
+    }
+
+    public double get(int key) {
+        int slot = findSlot(keys, filled, key);
+
+        return filled[slot] ? values[slot] : 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<Integer> topKeys(int limit) {
+        int capacity = Math.min(limit, size);
+        int[] heapKeys = new int[capacity];
+        double[] heapValues = new double[capacity];
+        int heapSize = 0;
+
+        for (int slot = 0; slot < keys.length && capacity > 0; slot++) {
+            if (!filled[slot]) {
+                continue;
+            }
+
+            if (heapSize < capacity) {
+                heapKeys[heapSize] = keys[slot];
+                heapValues[heapSize] = values[slot];
+                siftUp(heapKeys, heapValues, heapSize++);
+            } else if (isLess(heapKeys[0], heapValues[0], keys[slot], values[slot])) {
+                heapKeys[0] = keys[slot];
+                heapValues[0] = values[slot];
+                siftDown(heapKeys, heapValues, heapSize);
+            }
+        }
+
+        Integer[] ranked = new Integer[heapSize];
+
+        while (heapSize > 0) {
+            ranked[--heapSize] = heapKeys[0];
+            heapKeys[0] = heapKeys[heapSize];
+            heapValues[0] = heapValues[heapSize];
+            siftDown(heapKeys, heapValues, heapSize);
+        }
+
+        return Arrays.asList(ranked);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        boolean[] oldFilled = filled;
+
+        keys = new int[oldKeys.length * 2];
+        values = new double[oldKeys.length * 2];
+        filled = new boolean[oldKeys.length * 2];
+
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldFilled[slot]) {
+                int newSlot = findSlot(keys, filled, oldKeys[slot]);
+
+                keys[newSlot] = oldKeys[slot];
+                values[newSlot] = oldValues[slot];
+                filled[newSlot] = true;
+            }
+        }
+    }
+
+    private static int findSlot(int[] keys, boolean[] filled, int key) {
+        int mask = keys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+
+        while (filled[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private static boolean isLess(int key, double value, int otherKey, double otherValue) {
+        int byValue = Double.compare(value, otherValue);
+
+        return byValue != 0 ? byValue < 0 : key > otherKey;
+    }
+
+    private static void siftUp(int[] heapKeys, double[] heapValues, int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+
+            if (!isLess(heapKeys[position], heapValues[position], heapKeys[parent], heapValues[parent])) {
+                return;
+            }
+
+            swap(heapKeys, heapValues, position, parent);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] heapKeys, double[] heapValues, int heapSize) {
+        int position = 0;
+
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+
+            if (left < heapSize && isLess(heapKeys[left], heapValues[left], heapKeys[smallest],
+                    heapValues[smallest])) {
+                smallest = left;
+            }
+
+            if (right < heapSize && isLess(heapKeys[right], heapValues[right], heapKeys[smallest],
+                    heapValues[smallest])) {
+                smallest = right;
+            }
+
+            if (smallest == position) {
+                return;
+            }
+
+            swap(heapKeys, heapValues, position, smallest);
+            position = smallest;
+        }
+    }
+
+    private static void swap(int[] heapKeys, double[] heapValues, int first, int second) {
+        int key = heapKeys[first];
+        double value = heapValues[first];
+
+        heapKeys[first] = heapKeys[second];
+        heapValues[first] = heapValues[second];
+        heapKeys[second] = key;
+        heapValues[second] = value;
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+public class LiveIdIndex {
+    private final String table;
+    private final String idColumn;
+    private final String missingMessage;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final BitSet ids = new BitSet();
+    private final BitSet removed = new BitSet();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public LiveIdIndex(String table, String idColumn, String missingMessage, JdbcTemplate jdbcTemplate,
+                       NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.table = table;
+        this.idColumn = idColumn;
+        this.missingMessage = missingMessage;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    public void reload() {
+        List<Integer> loadedIds = jdbcTemplate.queryForList("SELECT " + idColumn + " FROM " + table, Integer.class);
+
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            loadedIds.forEach(ids::set);
+            ids.andNot(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Индекс идентификаторов таблицы {} загружен, количество = {}", table, loadedIds.size());
+    }
+
+    public void add(int id) {
+        lock.writeLock().lock();
+        try {
+            removed.clear(id);
+            ids.set(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            ids.clear(id);
+            removed.set(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeAll(Collection<Integer> removedIds) {
+        lock.writeLock().lock();
+        try {
+            for (int id : removedIds) {
+                ids.clear(id);
+                removed.set(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+
+        lock.readLock().lock();
+        try {
+            return ids.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean exists(int id) {
+        if (contains(id)) {
+            return true;
+        }
+
+        if (id < 0) {
+            return false;
+        }
+
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE " + idColumn + " = ?",
+                Integer.class, id);
+
+        return count != null && count > 0 && addLoaded(id);
+    }
+
+    public void require(int id) {
+        if (!exists(id)) {
+            String errorMessage = String.format(missingMessage, id);
+
+            log.warn(errorMessage);
+
+            throw new NoSuchElementException(errorMessage);
+        }
+    }
+
+    public Set<Integer> findExisting(Collection<Integer> candidateIds) {
+        Set<Integer> existingIds = new HashSet<>();
+        Set<Integer> missingIds = new HashSet<>();
+
+        for (Integer id : candidateIds) {
+            if (contains(id)) {
+                existingIds.add(id);
+            } else if (id >= 0) {
+                missingIds.add(id);
+            }
+        }
+
+        for (List<Integer> batch : BatchUtils.partition(missingIds)) {
+            List<Integer> foundIds = namedParameterJdbcTemplate.queryForList("SELECT " + idColumn + " FROM " + table +
+                    " WHERE " + idColumn + " IN (:ids)", Map.of("ids", batch), Integer.class);
+
+            for (int id : foundIds) {
+                if (addLoaded(id)) {
+                    existingIds.add(id);
+                }
+            }
+        }
+
+        return existingIds;
+    }
+
+    private boolean addLoaded(int id) {
+        lock.writeLock().lock();
+        try {
+            if (removed.get(id)) {
+                log.debug("Идентификатор {} таблицы {} удален во время проверки и не добавлен в индекс", id, table);
+
+                return false;
+            }
+
+            ids.set(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.debug("Идентификатор {} таблицы {} найден в базе данных и добавлен в индекс", id, table);
+
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+@Component
+public class LiveIdRegistry {
+    private final LiveIdIndex films;
+    private final LiveIdIndex users;
+    private final LiveIdIndex reviews;
+    private final LiveIdIndex directors;
+
+    public LiveIdRegistry(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        films = new LiveIdIndex("films", "film_id", "Фильм с id = %s отсутствует", jdbcTemplate,
+                namedParameterJdbcTemplate);
+        users = new LiveIdIndex("users", "user_id", "Пользователь с id = %s отсутствует", jdbcTemplate,
+                namedParameterJdbcTemplate);
+        reviews = new LiveIdIndex("reviews", "review_id", "Отзыв с id = %s отсутствует", jdbcTemplate,
+                namedParameterJdbcTemplate);
+        directors = new LiveIdIndex("director", "id", "Режиссер с id = %s отсутствует", jdbcTemplate,
+                namedParameterJdbcTemplate);
+    }
+
+    @PostConstruct
+    public void reload() {
+        films.reload();
+        users.reload();
+        reviews.reload();
+        directors.reload();
+    }
+
+    public LiveIdIndex films() {
+        return films;
+    }
+
+    public LiveIdIndex users() {
+        return users;
+    }
+
+    public LiveIdIndex reviews() {
+        return reviews;
+    }
+
+    public LiveIdIndex directors() {
+        return directors;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class MutationLocks {
+    private final StripedLocks filmScores;
+    private final StripedLocks reviewVotes;
+
+    public MutationLocks(@Value("${filmorate.locks.stripes:64}") int stripes) {
+        filmScores = new StripedLocks(stripes);
+        reviewVotes = new StripedLocks(stripes);
+    }
+
+    public StripedLocks filmScores() {
+        return filmScores;
+    }
+
+    public StripedLocks reviewVotes() {
+        return reviewVotes;
+    }
+}
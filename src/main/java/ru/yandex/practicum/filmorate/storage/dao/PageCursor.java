@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class PageCursor {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+    private static final String PREFIX = "id:";
+
+    private PageCursor() {
+
+    }
+
+    public static String encode(int lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static int decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+
+            return Integer.parseInt(value.substring(value.startsWith(PREFIX) ? PREFIX.length() : value.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Некорректный курсор страницы: %s", cursor));
+        }
+    }
+
+    public static int checkLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException(String.format("Размер страницы должен быть в диапозоне: [1; %d], " +
+                    "передано - %d", MAX_LIMIT, limit));
+        }
+
+        return limit;
+    }
+}
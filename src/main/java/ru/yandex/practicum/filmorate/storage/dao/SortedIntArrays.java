@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import java.util.Arrays;
+
+public class SortedIntArrays {
+    public static final int[] EMPTY = new int[0];
+
+    private SortedIntArrays() {
+
+    }
+
+    public static int[] insert(int[] values, int value) {
+        int position = Arrays.binarySearch(values, value);
+
+        if (position >= 0) {
+            return values;
+        }
+
+        int insertAt = -position - 1;
+        int[] updated = new int[values.length + 1];
+
+        System.arraycopy(values, 0, updated, 0, insertAt);
+        updated[insertAt] = value;
+        System.arraycopy(values, insertAt, updated, insertAt + 1, values.length - insertAt);
+
+        return updated;
+    }
+
+    public static int[] remove(int[] values, int value) {
+        int position = Arrays.binarySearch(values, value);
+
+        if (position < 0) {
+            return values;
+        }
+
+        if (values.length == 1) {
+            return null;
+        }
+
+        int[] updated = new int[values.length - 1];
+
+        System.arraycopy(values, 0, updated, 0, position);
+        System.arraycopy(values, position + 1, updated, position, values.length - position - 1);
+
+        return updated;
+    }
+
+    public static int[] intersect(int[] first, int[] second) {
+        int[] smaller = first.length <= second.length ? first : second;
+        int[] larger = smaller == first ? second : first;
+
+        if (smaller.length == 0) {
+            return EMPTY;
+        }
+
+        int[] common = new int[smaller.length];
+        int size = 0;
+
+        if ((long) smaller.length * (32 - Integer.numberOfLeadingZeros(larger.length)) < larger.length) {
+            int from = 0;
+
+            for (int value : smaller) {
+                int position = Arrays.binarySearch(larger, from, larger.length, value);
+
+                if (position >= 0) {
+                    common[size++] = value;
+                    from = position + 1;
+                } else {
+                    from = -position - 1;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+
+            while (i < smaller.length && j < larger.length) {
+                if (smaller[i] < larger[j]) {
+                    i++;
+                } else if (smaller[i] > larger[j]) {
+                    j++;
+                } else {
+                    common[size++] = smaller[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        return Arrays.copyOf(common, size);
+    }
+}
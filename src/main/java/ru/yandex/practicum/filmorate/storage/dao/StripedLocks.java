@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+public class StripedLocks {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+
+        locks = new ReentrantLock[size];
+        mask = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(int key, Supplier<T> action) {
+        ReentrantLock lock = locks[stripe(key)];
+
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public <T> T withLocks(Collection<Integer> keys, Supplier<T> action) {
+        int[] stripes = keys.stream()
+                .mapToInt(this::stripe)
+                .distinct()
+                .sorted()
+                .toArray();
+        int locked = 0;
+
+        try {
+            for (int stripe : stripes) {
+                locks[stripe].lock();
+                locked++;
+            }
+
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+        }
+    }
+
+    public int getStripes() {
+        return locks.length;
+    }
+
+    private int stripe(int key) {
+        int hash = key * 0x9E3779B9;
+
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -3,11 +3,15 @@ package ru.yandex.practicum.filmorate.storage.dao.director;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.dao.BatchUtils;
+import ru.yandex.practicum.filmorate.storage.dao.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -19,6 +23,9 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DirectorDao implements DirectorStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final FilmCache filmCache;
+    private final LiveIdRegistry liveIds;
 
     @Override
     public List<Director> getDirectors() {
@@ -57,6 +64,27 @@ public class DirectorDao implements DirectorStorage {
                 .comparing(Director::getId)).collect(Collectors.toList());
     }
 
+    @Override
+    public Map<Integer, List<Director>> getFilmsDirectors(Collection<Integer> filmIds) {
+        log.info("Получен запрос на отправку режиссеров для {} фильмов", filmIds.size());
+
+        String sql = "SELECT fd.film_id, d.*\n" +
+                "FROM film_director AS fd\n" +
+                "JOIN director AS d ON d.id = fd.director_id\n" +
+                "WHERE fd.film_id IN (:ids)\n" +
+                "ORDER BY fd.film_id, d.id";
+
+        Map<Integer, List<Director>> filmsDirectors = new HashMap<>();
+
+        for (List<Integer> batch : BatchUtils.partition(filmIds)) {
+            namedParameterJdbcTemplate.query(sql, Map.of("ids", batch), rs -> {
+                filmsDirectors.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>()).add(makeDirector(rs));
+            });
+        }
+
+        return filmsDirectors;
+    }
+
     @Override
     public Director createNewDirector(Director director) {
         log.info("Получен запрос на создание нового режиссера");
@@ -71,6 +99,7 @@ public class DirectorDao implements DirectorStorage {
         Number generatedId = jdbcInsert.executeAndReturnKey(parameters);
 
         director.setId(generatedId.intValue());
+        liveIds.directors().add(director.getId());
 
         log.info("Режиссер {} успешно создан", director.getName());
         return director;
@@ -80,9 +109,10 @@ public class DirectorDao implements DirectorStorage {
     public Director updateNewDirector(Director director) {
         log.info("Получен запрос на обновление режиссера");
 
-        getDirectorById(director.getId());
+        liveIds.directors().require(director.getId());
 
         jdbcTemplate.update("UPDATE director SET name = ? WHERE id = ?", director.getName(), director.getId());
+        filmCache.invalidateAll();
 
         log.info("Режисссер с id = {} успешно обновлен", director.getId());
 
@@ -95,6 +125,7 @@ public class DirectorDao implements DirectorStorage {
 
         if (film.getDirectors() == null) {
             deleteDirectorsByFilmId(film.getId());
+            filmCache.invalidate(film.getId());
             return;
         }
 
@@ -114,16 +145,20 @@ public class DirectorDao implements DirectorStorage {
         if (!addedFilmDirectors.isEmpty()) {
             addDirectorsToFilm(film, addedFilmDirectors);
         }
+
+        filmCache.invalidate(film.getId());
     }
 
     public void deleteFilmDirectors(Film film, List<Integer> removedFilmDirectors) {
         log.info(String.format("Получен запрос на удаление режиссера фильма %s", film.getName()));
 
         removedFilmDirectors.forEach(id -> {
-            jdbcTemplate.update("DELETE FROM film_director WHERE id = ? ", id);
+            jdbcTemplate.update("DELETE FROM film_director WHERE film_id = ? AND director_id = ? ", film.getId(), id);
 
             log.info("Режиссер {} успешно удален у фильма {}", id, film.getName());
         });
+
+        filmCache.invalidate(film.getId());
     }
 
     public void deleteFilmDirectors(int directorId) {
@@ -144,6 +179,8 @@ public class DirectorDao implements DirectorStorage {
         Director director = getDirectorById(id);
         deleteFilmDirectors(id);
         jdbcTemplate.update("DELETE FROM director WHERE id = ?", id);
+        liveIds.directors().remove(id);
+        filmCache.invalidateAll();
         return director;
     }
 
@@ -154,6 +191,8 @@ public class DirectorDao implements DirectorStorage {
 
             log.info("Режиссер {} успешно добавлен фильму {}", id, film.getName());
         });
+
+        filmCache.invalidate(film.getId());
     }
 
     private Director makeDirector(ResultSet rs) throws SQLException {
@@ -3,7 +3,9 @@ package ru.yandex.practicum.filmorate.storage.dao.director;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface DirectorStorage {
     List<Director> getDirectors();
@@ -12,6 +14,8 @@ public interface DirectorStorage {
 
     List<Director> getFilmsDirectors(int id);
 
+    Map<Integer, List<Director>> getFilmsDirectors(Collection<Integer> filmIds);
+
     Director createNewDirector(Director director);
 
     Director updateNewDirector(Director director);
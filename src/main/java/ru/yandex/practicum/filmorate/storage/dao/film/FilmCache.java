@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.storage.dao.film;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.FilmDeletedEvent;
+import ru.yandex.practicum.filmorate.event.FilmEventListener;
+import ru.yandex.practicum.filmorate.event.FilmEventPublisher;
+import ru.yandex.practicum.filmorate.event.FilmScoreChangedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+public class FilmCache implements FilmEventListener {
+    private final Cache<Integer, Film> cache;
+    private final FilmEventPublisher filmEventPublisher;
+
+    public FilmCache(@Value("${filmorate.cache.films.maximum-size:10000}") long maximumSize,
+                     @Value("${filmorate.cache.films.expire-after-write:10m}") Duration expireAfterWrite,
+                     MeterRegistry meterRegistry, FilmEventPublisher filmEventPublisher) {
+        this.filmEventPublisher = filmEventPublisher;
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "films");
+    }
+
+    @PostConstruct
+    public void init() {
+        filmEventPublisher.subscribe(this);
+    }
+
+    public Film get(int id, Function<Integer, Film> loader) {
+        return copyOf(cache.get(id, loader));
+    }
+
+    public Map<Integer, Film> getAll(Collection<Integer> ids,
+                                     Function<Collection<Integer>, Map<Integer, Film>> loader) {
+        return cache.getAll(ids, keys -> {
+                    List<Integer> missingIds = new ArrayList<>();
+                    keys.forEach(missingIds::add);
+
+                    return loader.apply(missingIds);
+                }).values().stream()
+                .map(this::copyOf)
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+    }
+
+    public void invalidate(int id) {
+        log.debug("Фильм с id = {} удален из кэша", id);
+
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        log.debug("Кэш фильмов полностью очищен");
+
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void onFilmDeleted(FilmDeletedEvent event) {
+        invalidate(event.getFilmId());
+    }
+
+    @Override
+    public void onFilmScoreChanged(FilmScoreChangedEvent event) {
+        invalidate(event.getFilmId());
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    private Film copyOf(Film film) {
+        return film.toBuilder()
+                .genres(film.getGenres() == null ? null : new ArrayList<>(film.getGenres()))
+                .directors(film.getDirectors() == null ? null : new ArrayList<>(film.getDirectors()))
+                .build();
+    }
+}
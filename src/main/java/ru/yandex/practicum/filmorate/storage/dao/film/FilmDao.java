@@ -3,21 +3,44 @@ package ru.yandex.practicum.filmorate.storage.dao.film;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.event.FilmDeletedEvent;
+import ru.yandex.practicum.filmorate.event.FilmEventPublisher;
+import ru.yandex.practicum.filmorate.event.FilmScoreChangedEvent;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.ScoreImportError;
 import ru.yandex.practicum.filmorate.model.SortingType;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+import ru.yandex.practicum.filmorate.storage.dao.BatchUtils;
+import ru.yandex.practicum.filmorate.storage.dao.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.storage.dao.MutationLocks;
+import ru.yandex.practicum.filmorate.storage.dao.PageCursor;
 import ru.yandex.practicum.filmorate.storage.dao.director.DirectorStorage;
 import ru.yandex.practicum.filmorate.storage.dao.film.genre.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.dao.film.rating.RatingStorage;
+import ru.yandex.practicum.filmorate.storage.dao.film.stats.FilmScoreDelta;
+import ru.yandex.practicum.filmorate.storage.dao.film.stats.FilmStatsStorage;
 import ru.yandex.practicum.filmorate.storage.dao.user.UserStorage;
 
 import javax.validation.ValidationException;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static ru.yandex.practicum.filmorate.service.UserEventFactory.*;
 
@@ -26,10 +49,19 @@ import static ru.yandex.practicum.filmorate.service.UserEventFactory.*;
 @RequiredArgsConstructor
 public class FilmDao implements FilmStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final RatingStorage ratingStorage;
     private final UserStorage userStorage;
     private final GenreStorage genreStorage;
     private final DirectorStorage directorStorage;
+    private final FilmCache filmCache;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final UserScoreMatrix userScoreMatrix;
+    private final FilmEventPublisher eventPublisher;
+    private final FilmStatsStorage filmStatsStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final LiveIdRegistry liveIds;
+    private final MutationLocks mutationLocks;
 
     @Override
     public List<Film> getFilms() {
@@ -39,46 +71,141 @@ public class FilmDao implements FilmStorage {
 
         log.info("Все фильмы были успешно отправлены!");
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs));
+        return queryFilms(sql);
     }
 
-    private Film makeFilm(ResultSet rs) throws SQLException {
-        return new Film(
-                rs.getInt("film_id"),
-                rs.getString("name"),
-                rs.getString("description"),
-                rs.getDate("release_date").toLocalDate(),
-                rs.getInt("duration"),
-                ratingStorage.getRatingById(rs.getInt("rating_id")),
-                genreStorage.getFilmsGenres(rs.getInt("film_id")),
-                directorStorage.getFilmsDirectors(rs.getInt("film_id")),
-                rs.getDouble("ranking"));
+    @Override
+    public Page<Film> getFilmsPage(String cursor, int limit) {
+        int afterId = PageCursor.decode(cursor);
+
+        log.info("Получен запрос на отправку {} фильмов после фильма с id = {}", limit, afterId);
+
+        List<Film> films = jdbcTemplate.query("SELECT * FROM films WHERE film_id > ? ORDER BY film_id LIMIT ?",
+                (rs, rowNum) -> makeFilm(rs), afterId, limit + 1);
+
+        String next = null;
+
+        if (films.size() > limit) {
+            films = films.subList(0, limit);
+            next = PageCursor.encode(films.get(limit - 1).getId());
+        }
+
+        hydrateFilms(films);
+
+        log.info("Страница из {} фильмов успешно отправлена", films.size());
+
+        return new Page<>(films, next);
+    }
+
+    @Override
+    public void exportFilms(int chunkSize, Consumer<List<Film>> chunkConsumer) {
+        log.info("Получен запрос на выгрузку всех фильмов порциями по {}", chunkSize);
+
+        FilmChunkHandler handler = new FilmChunkHandler(chunkSize, chunkConsumer);
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT * FROM films ORDER BY film_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(chunkSize);
+
+            return statement;
+        }, handler);
+
+        handler.flush();
+
+        log.info("Выгрузка фильмов завершена, выгружено {} фильмов", handler.exported);
     }
 
     @Override
     public Film getFilmById(int id) {
         log.info("Получен запрос на отправку фильма с id = {}", id);
 
-        SqlRowSet filmRows = jdbcTemplate.queryForRowSet("SELECT * FROM films WHERE film_id = ?", id);
+        Film film = filmCache.get(id, this::loadFilmById);
+
+        log.info("Фильм с id = {} успешно отправлен клиенту", id);
+
+        return film;
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(Collection<Integer> ids) {
+        log.info("Получен запрос на отправку {} фильмов по id", ids.size());
+
+        Map<Integer, Film> filmsById = filmCache.getAll(new LinkedHashSet<>(ids), this::loadFilmsByIds);
+
+        return ids.stream()
+                .distinct()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private Film loadFilmById(int id) {
+        List<Film> films = queryFilms("SELECT * FROM films WHERE film_id = ?", id);
+
+        if (films.isEmpty()) {
+            log.warn("Отсутствует фильм с id = {}", id);
+
+            throw new NoSuchElementException(String.format("Фильм с id = %s отсутствует", id));
+        }
+
+        return films.get(0);
+    }
+
+    private Map<Integer, Film> loadFilmsByIds(Collection<Integer> ids) {
+        Map<Integer, Film> filmsById = new HashMap<>();
+
+        for (List<Integer> batch : BatchUtils.partition(ids)) {
+            namedParameterJdbcTemplate.query("SELECT * FROM films WHERE film_id IN (:ids)", Map.of("ids", batch),
+                    rs -> {
+                        Film film = makeFilm(rs);
+                        filmsById.put(film.getId(), film);
+                    });
+        }
+
+        hydrateFilms(filmsById.values());
+
+        return filmsById;
+    }
+
+    private List<Film> queryFilms(String sql, Object... args) {
+        List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs), args);
 
-        if (filmRows.next()) {
-            log.info("Фильм с id = {} успешно отправлен клиенту", id);
+        hydrateFilms(films);
 
-            return new Film(
-                    filmRows.getInt("film_id"),
-                    filmRows.getString("name"),
-                    filmRows.getString("description"),
-                    filmRows.getDate("release_date").toLocalDate(),
-                    filmRows.getInt("duration"),
-                    ratingStorage.getRatingById(filmRows.getInt("rating_id")),
-                    genreStorage.getFilmsGenres(filmRows.getInt("film_id")),
-                    directorStorage.getFilmsDirectors(filmRows.getInt("film_id")),
-                    filmRows.getDouble("ranking"));
+        return films;
+    }
+
+    private void hydrateFilms(Collection<Film> films) {
+        if (films.isEmpty()) {
+            return;
         }
 
-        log.warn("Отсутствует фильм с id = {}", id);
+        Set<Integer> filmIds = films.stream().map(Film::getId).collect(Collectors.toSet());
+        Set<Integer> ratingIds = films.stream().map(film -> film.getMpa().getId()).collect(Collectors.toSet());
 
-        throw new NoSuchElementException(String.format("Фильм с id = %s отсутствует", id));
+        Map<Integer, Rating> ratings = ratingStorage.getRatingsByIds(ratingIds);
+        Map<Integer, List<Genre>> genres = genreStorage.getFilmsGenres(filmIds);
+        Map<Integer, List<Director>> directors = directorStorage.getFilmsDirectors(filmIds);
+
+        for (Film film : films) {
+            film.setMpa(ratings.getOrDefault(film.getMpa().getId(), film.getMpa()));
+            film.setGenres(genres.getOrDefault(film.getId(), new ArrayList<>()));
+            film.setDirectors(directors.getOrDefault(film.getId(), new ArrayList<>()));
+        }
+    }
+
+    private Film makeFilm(ResultSet rs) throws SQLException {
+        return new Film(
+                rs.getInt("film_id"),
+                rs.getString("name"),
+                rs.getString("description"),
+                rs.getDate("release_date").toLocalDate(),
+                rs.getInt("duration"),
+                new Rating(rs.getInt("rating_id"), null),
+                null,
+                null,
+                rs.getDouble("ranking"));
     }
 
     @Override
@@ -97,22 +224,30 @@ public class FilmDao implements FilmStorage {
         parameters.put("rating_id", film.getMpa().getId());
         parameters.put("ranking", 0);
 
-        Number generatedId = jdbcInsert.executeAndReturnKey(parameters);
+        transactionTemplate.executeWithoutResult(status -> {
+            Number generatedId = jdbcInsert.executeAndReturnKey(parameters);
+
+            film.setId(generatedId.intValue());
+            filmStatsStorage.createFilmStats(film.getId());
+            genreStorage.updateFilmGenres(film);
+            directorStorage.updateFilmDirectors(film);
+        });
 
         log.info("Фильм {} успешно создан", film.getName());
 
-        film.setId(generatedId.intValue());
-        genreStorage.updateFilmGenres(film);
-        directorStorage.updateFilmDirectors(film);
+        Film createdFilm = getFilmById(film.getId());
 
-        return getFilmById(generatedId.intValue());
+        eventPublisher.publish(new FilmChangedEvent(createdFilm));
+        liveIds.films().add(film.getId());
+
+        return createdFilm;
     }
 
     @Override
     public Film updateFilm(Film film) {
         log.info("Получен запрос на обновление фильма");
 
-        getFilmById(film.getId());
+        liveIds.films().require(film.getId());
 
         jdbcTemplate.update("UPDATE films SET name = ?, description = ?, release_date = ?," +
                         "duration = ?, rating_id = ? WHERE film_id = ?", film.getName(), film.getDescription(),
@@ -122,8 +257,13 @@ public class FilmDao implements FilmStorage {
 
         genreStorage.updateFilmGenres(film);
         directorStorage.updateFilmDirectors(film);
+        filmCache.invalidate(film.getId());
+
+        Film updatedFilm = getFilmById(film.getId());
+
+        eventPublisher.publish(new FilmChangedEvent(updatedFilm));
 
-        return getFilmById(film.getId());
+        return updatedFilm;
     }
 
     @Override
@@ -131,8 +271,30 @@ public class FilmDao implements FilmStorage {
         log.info(String.format("Получен запрос на удаление фильма с id = %s", id));
 
         Film deletedFilm = getFilmById(id);
+        Map<Integer, Integer> filmScores = new HashMap<>();
+        List<Integer> filmReviewIds = new ArrayList<>();
+
+        mutationLocks.filmScores().withLock(id, () -> {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.query("SELECT user_id, score FROM film_score WHERE film_id = ? FOR UPDATE",
+                        rs -> {
+                            filmScores.put(rs.getInt("user_id"), rs.getInt("score"));
+                        }, id);
+
+                filmReviewIds.addAll(jdbcTemplate.queryForList("SELECT review_id FROM reviews WHERE film_id = ?",
+                        Integer.class, id));
+                jdbcTemplate.update("DELETE FROM films WHERE film_id = ?", id);
+            });
 
-        jdbcTemplate.update("DELETE FROM films WHERE film_id = ?", id);
+            liveIds.films().remove(id);
+            liveIds.reviews().removeAll(filmReviewIds);
+
+            filmScores.forEach((userId, score) -> eventPublisher.publish(
+                    new FilmScoreChangedEvent(id, userId, score, FilmScoreChangedEvent.NO_SCORE)));
+            eventPublisher.publish(new FilmDeletedEvent(id));
+
+            return filmScores;
+        });
 
         log.info("Фильм {} был успешно удален", deletedFilm.getName());
 
@@ -143,141 +305,187 @@ public class FilmDao implements FilmStorage {
     public List<Film> getTopFilmsByScores(Integer count, Integer genreId, Integer year) {
         log.info("Получен запрос на получении топ {} лучших фильмов по жанрам = {} и годам = {}", count, genreId, year);
 
-        StringBuilder sql = new StringBuilder("SELECT f.*\n" +
-                "FROM films AS f\n" +
-                "LEFT JOIN film_score AS fs ON f.film_id = fs.film_id\n");
+        List<Integer> topFilmIds = popularityLeaderboard.getTopFilmIds(count == null ? Integer.MAX_VALUE : count,
+                genreId, year);
 
-        List<Integer> params = new ArrayList<>();
+        log.info("Топ {} лучших фильмов по жанрам = {} и годам = {} отправлены клиенту", count, genreId, year);
 
-        if (genreId != null) {
-            sql.append("JOIN film_genre AS fg ON f.film_id = fg.film_id AND fg.genre_id = ?\n");
-            params.add(genreId);
-        }
+        return getFilmsByIds(topFilmIds);
+    }
 
-        if (year != null) {
-            sql.append("WHERE YEAR(f.release_date) = ?\n");
-            params.add(year);
-        }
+    @Override
+    public List<Film> getTopCommonFilms(int userId1, int userId2) {
+        return getTopCommonFilms(List.of(userId1, userId2));
+    }
 
-        sql.append("GROUP BY f.film_id\n" +
-                "ORDER BY COUNT(fs.user_id) DESC, AVG(fs.score) DESC\n");
+    @Override
+    public List<Film> getTopCommonFilms(Collection<Integer> userIds) {
+        log.info("Получен запрос на получение общих фильмов для пользователей {}", userIds);
 
-        if (count != null) {
-            sql.append("LIMIT ?;");
-            params.add(count);
+        if (userIds.isEmpty()) {
+            throw new IllegalArgumentException("Список пользователей для поиска общих фильмов пуст");
         }
 
-        log.info("Топ {} лучших фильмов по жанрам = {} и годам = {} отправлены клиенту", count, genreId, year);
+        userIds.forEach(liveIds.users()::require);
 
-        return jdbcTemplate.query(sql.toString(), params.toArray(), (rs, rowNum) -> makeFilm(rs));
-    }
+        if (userIds.stream().distinct().count() < 2) {
+            log.info("Для поиска общих фильмов нужно хотя бы два разных пользователя, получены {}", userIds);
 
-    @Override
-    public List<Film> getTopCommonFilms(int userId1, int userId2) {
+            return Collections.emptyList();
+        }
 
-        log.info("Получен запрос на получение общих фильмов для пользователей {} и {}", userId1, userId2);
+        ScoreVector[] rows = userIds.stream()
+                .distinct()
+                .map(userScoreMatrix::getScoreVector)
+                .sorted(Comparator.comparingInt(ScoreVector::size))
+                .toArray(ScoreVector[]::new);
+        int[] commonFilmIds = rows[0].filmIds();
+        int common = commonFilmIds.length;
 
-        userStorage.getUserById(userId1);
-        userStorage.getUserById(userId2);
+        for (int i = 1; i < rows.length && common > 0; i++) {
+            int kept = 0;
 
-        log.info("Общие фильмы для пользователей {} и {} отправлены клиенту", userId1, userId2);
+            for (int j = 0; j < common; j++) {
+                if (rows[i].indexOf(commonFilmIds[j]) >= 0) {
+                    commonFilmIds[kept++] = commonFilmIds[j];
+                }
+            }
 
-        String sql = "SELECT f.*\n" +
-                "FROM films AS f\n" +
-                "JOIN film_score fs ON f.film_id = fs.film_id\n" +
-                "WHERE fs.user_id IN (?, ?)\n" +
-                "GROUP BY f.film_id\n" +
-                "HAVING COUNT(fs.user_id) > 1\n" +
-                "ORDER BY (" +
-                "SELECT COUNT(fs.user_id) " +
-                "FROM film_score AS fs " +
-                "WHERE f.film_id = fs.film_id" +
-                ") DESC, (" +
-                "SELECT AVG(fs.score) " +
-                "FROM film_score AS fs " +
-                "WHERE f.film_id = fs.film_id" +
-                ") DESC";
+            common = kept;
+        }
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs), userId1, userId2);
+        List<Integer> sortedFilmIds = popularityLeaderboard.sortByPopularity(Arrays.copyOf(commonFilmIds, common));
+
+        log.info("Общие фильмы для пользователей {} отправлены клиенту", userIds);
+
+        return getFilmsByIds(sortedFilmIds);
     }
 
     @Override
     public void addScoreToFilm(int filmId, int userId, int score) {
         log.info("Получен запрос на добавление оценки фильму с id = {} от пользователя  c id = {}", filmId, userId);
 
-        getFilmById(filmId);
-        userStorage.getUserById(userId);
+        liveIds.films().require(filmId);
+        liveIds.users().require(userId);
 
-        SqlRowSet currentFilmScore = jdbcTemplate.queryForRowSet("SELECT * FROM film_score AS fs WHERE " +
-                "fs.film_id = ? AND fs.user_id = ? ", filmId, userId);
+        mutationLocks.filmScores().withLock(filmId, () -> {
+            FilmScoreChangedEvent scoreChange = transactionTemplate.execute(status ->
+                    writeScore(filmId, userId, score));
 
-        if (currentFilmScore.next()) {
-            int curScore = currentFilmScore.getInt("score");
+            if (scoreChange != null) {
+                eventPublisher.publish(scoreChange);
+            }
+
+            return scoreChange;
+        });
+    }
 
-            if (curScore != score) {
-                log.info("Пользователь c id = {} успешно изменил оценку {} на {} фильму c id = {}", userId, curScore,
-                        score, filmId);
+    @Override
+    public List<ScoreImportError> addScores(List<FilmScore> scores, long firstIndex) {
+        log.info("Получен запрос на пакетное добавление {} оценок", scores.size());
 
-                jdbcTemplate.update("UPDATE film_score SET score = ? WHERE film_id = ? AND user_id = ?", score,
-                        filmId, userId);
+        List<ScoreImportError> errors = new ArrayList<>();
+        Set<Integer> filmIds = new HashSet<>();
+        Set<Integer> userIds = new HashSet<>();
 
-                userStorage.registerUserEvent(getUpdateFilmScoreEvent(userId, filmId));
+        for (FilmScore score : scores) {
+            if (score.getFilmId() != null && score.getUserId() != null) {
+                filmIds.add(score.getFilmId());
+                userIds.add(score.getUserId());
+            }
+        }
 
-                SqlRowSet updateRanking = jdbcTemplate.queryForRowSet("SELECT AVG(score) AS avg_score FROM film_score WHERE " +
-                        "film_id = ?", filmId);
+        Set<Integer> existingFilmIds = liveIds.films().findExisting(filmIds);
+        Set<Integer> existingUserIds = liveIds.users().findExisting(userIds);
+        Map<Long, FilmScore> latestScores = new LinkedHashMap<>();
 
-                if (updateRanking.next()) {
-                    jdbcTemplate.update("UPDATE films SET ranking = ? WHERE film_id = ?",
-                            updateRanking.getDouble("avg_score"), filmId);
-                }
+        for (int i = 0; i < scores.size(); i++) {
+            FilmScore score = scores.get(i);
+            String error = validateScore(score, existingFilmIds, existingUserIds);
 
-                return;
+            if (error != null) {
+                errors.add(new ScoreImportError(firstIndex + i, score.getFilmId(), score.getUserId(), error));
+            } else {
+                latestScores.put(scoreKey(score.getFilmId(), score.getUserId()), score);
             }
+        }
 
-            return;
+        if (latestScores.isEmpty()) {
+            return errors;
         }
 
-        jdbcTemplate.update("INSERT INTO film_score (film_id, user_id, score) VALUES (?, ?, ?)", filmId, userId, score);
+        Set<Integer> affectedFilmIds = latestScores.values().stream()
+                .map(FilmScore::getFilmId)
+                .collect(Collectors.toSet());
+        List<FilmScoreChangedEvent> scoreChanges = mutationLocks.filmScores().withLocks(affectedFilmIds, () -> {
+            List<FilmScoreChangedEvent> committed = transactionTemplate.execute(status ->
+                    upsertScores(latestScores.values()));
 
-        log.info("Пользователь с id = {} успешно поставил оценку {} фильму c id = {}", userId, score, filmId);
+            committed.forEach(eventPublisher::publish);
 
-        userStorage.registerUserEvent(getAddFilmScoreEvent(userId, filmId));
+            return committed;
+        });
 
-        SqlRowSet updateRanking = jdbcTemplate.queryForRowSet("SELECT AVG(score) AS avg_score FROM film_score WHERE " +
-                "film_id = ?", filmId);
+        log.info("Пакетно сохранено оценок: {}, изменено: {}, отклонено: {}", latestScores.size(),
+                scoreChanges.size(), errors.size());
 
-        if (updateRanking.next()) {
-            jdbcTemplate.update("UPDATE films SET ranking = ? WHERE film_id = ?",
-                    updateRanking.getDouble("avg_score"), filmId);
-        }
+        return errors;
     }
 
     @Override
     public void deleteScoreFromFilm(int filmId, int userId) {
         log.info("Получен запрос на удаление оценки фильму с id = {} от пользователя c id = {}", filmId, userId);
 
-        getFilmById(filmId);
-        userStorage.getUserById(userId);
+        liveIds.films().require(filmId);
+        liveIds.users().require(userId);
 
-        jdbcTemplate.update("DELETE FROM film_score WHERE film_id = ? AND user_id = ?", filmId, userId);
+        mutationLocks.filmScores().withLock(filmId, () -> {
+            FilmScoreChangedEvent scoreChange = transactionTemplate.execute(status -> removeScore(filmId, userId));
+
+            if (scoreChange != null) {
+                eventPublisher.publish(scoreChange);
+            }
+
+            return scoreChange;
+        });
 
         log.info("Пользователь с id = {} успешно удалил оценку у фильма с id = {}", userId, filmId);
+    }
 
-        userStorage.registerUserEvent(getDeleteFilmScoreEvent(userId, filmId));
+    @Override
+    public void deleteScores(List<FilmScore> scores) {
+        log.info("Получен запрос на пакетное удаление {} оценок", scores.size());
+
+        if (scores.isEmpty()) {
+            return;
+        }
 
-        SqlRowSet updateRanking = jdbcTemplate.queryForRowSet("SELECT AVG(score) AS avg_score FROM film_score WHERE " +
-                "film_id = ?", filmId);
+        Set<Integer> filmIds = new HashSet<>();
+        Set<Integer> userIds = new HashSet<>();
 
-        if (updateRanking.next()) {
-            jdbcTemplate.update("UPDATE films SET ranking = ? WHERE film_id = ?",
-                    updateRanking.getDouble("avg_score"), filmId);
+        for (FilmScore score : scores) {
+            filmIds.add(score.getFilmId());
+            userIds.add(score.getUserId());
         }
+
+        Set<Integer> existingFilmIds = liveIds.films().findExisting(filmIds);
+
+        List<FilmScoreChangedEvent> scoreChanges = mutationLocks.filmScores().withLocks(existingFilmIds, () -> {
+            List<FilmScoreChangedEvent> committed = transactionTemplate.execute(status ->
+                    removeScores(scores, existingFilmIds, userIds));
+
+            committed.forEach(eventPublisher::publish);
+
+            return committed;
+        });
+
+        log.info("Пакетно удалено оценок: {}", scoreChanges.size());
     }
 
     @Override
     public List<Film> getDirectorFilm(int directorId, String sortBy) {
 
-        directorStorage.getDirectorById(directorId);
+        liveIds.directors().require(directorId);
 
         String sql;
 
@@ -294,23 +502,22 @@ public class FilmDao implements FilmStorage {
                         "FROM FILMS f " +
                         "LEFT JOIN FILM_DIRECTOR fd ON f.FILM_ID = fd.FILM_ID " +
                         "LEFT JOIN DIRECTOR d ON d.ID = fd.DIRECTOR_ID " +
-                        "LEFT JOIN film_score AS fs ON fs.film_id = f.film_id " +
+                        "JOIN film_stats AS st ON st.film_id = f.film_id " +
                         "WHERE d.id = ? " +
-                        "GROUP BY f.film_id " +
-                        "ORDER BY COUNT(fs.user_id) DESC, AVG(fs.score) DESC";
+                        "ORDER BY st.score_count DESC, f.ranking DESC";
                 break;
             default:
                 throw new ValidationException("Неизвестный параметр сортировки sortBy=" + sortBy);
         }
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs), directorId);
+        return queryFilms(sql, directorId);
     }
 
     @Override
     public List<User> getUsersWhoScoredTheFilmById(int id) {
         log.info("Получен запрос на отправление всех людей, котрые оценили фильм с id = {}", id);
 
-        getFilmById(id);
+        liveIds.films().require(id);
 
         String sql = "SELECT u.*\n" +
                 "FROM users AS u\n" +
@@ -327,8 +534,8 @@ public class FilmDao implements FilmStorage {
         log.info("Получен запрос на отправку оценки фильма с id = {} от пользователя с id = {} и оценкой = {}", filmId,
                 userId, score);
 
-        getFilmById(filmId);
-        getFilmById(userId);
+        liveIds.films().require(filmId);
+        liveIds.users().require(userId);
 
         SqlRowSet scoreRows = jdbcTemplate.queryForRowSet("SELECT fs.* FROM film_score AS fs WHERE fs.film_id = ? " +
                 "AND fs.user_id = ? AND fs.score = ?", filmId, userId, score);
@@ -356,35 +563,32 @@ public class FilmDao implements FilmStorage {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append("SELECT f.*\n")
                 .append("FROM films AS f\n")
-                .append("LEFT JOIN film_score AS fs ON f.film_id = fs.film_id\n");
+                .append("JOIN film_stats AS st ON f.film_id = st.film_id\n");
 
         if (by.equals(SortingType.TITLE.toString())) {
             stringBuilder.append("WHERE LOWER(f.name) LIKE LOWER(?)\n")
-                    .append("GROUP BY f.film_id\n")
-                    .append("ORDER BY COUNT(fs.user_id) DESC, AVG(fs.score) DESC\n");
+                    .append("ORDER BY st.score_count DESC, f.ranking DESC\n");
 
-            return jdbcTemplate.query(stringBuilder.toString(), (rs, rowNum) -> makeFilm(rs), dbQuery);
+            return queryFilms(stringBuilder.toString(), dbQuery);
         }
 
         if (by.equals(SortingType.DIRECTOR.toString())) {
-            stringBuilder.append("JOIN film_director AS fd ON f.film_id = fd.film_id\n")
+            stringBuilder.append("WHERE f.film_id IN (SELECT fd.film_id FROM film_director AS fd\n")
                     .append("JOIN director AS d ON fd.director_id = d.id\n")
-                    .append("WHERE LOWER(d.name) LIKE LOWER(?)\n")
-                    .append("GROUP BY f.film_id\n")
-                    .append("ORDER BY COUNT(fs.user_id) DESC, AVG(fs.score) DESC\n");
+                    .append("WHERE LOWER(d.name) LIKE LOWER(?))\n")
+                    .append("ORDER BY st.score_count DESC, f.ranking DESC\n");
 
-            return jdbcTemplate.query(stringBuilder.toString(), (rs, rowNum) -> makeFilm(rs), dbQuery);
+            return queryFilms(stringBuilder.toString(), dbQuery);
         }
 
         if (isSortedByTitleAndDirector) {
-            stringBuilder.append("JOIN film_director AS fd ON f.film_id = fd.film_id\n")
+            stringBuilder.append("WHERE f.film_id IN (SELECT fd.film_id FROM film_director AS fd\n")
                     .append("JOIN director AS d ON fd.director_id = d.id\n")
                     .append("WHERE LOWER(d.name) LIKE LOWER(?)\n")
-                    .append("OR LOWER(f.name) LIKE LOWER(?)\n")
-                    .append("GROUP BY f.film_id\n")
-                    .append("ORDER BY COUNT(fs.user_id) DESC, AVG(fs.score) DESC\n");
+                    .append("OR LOWER(f.name) LIKE LOWER(?))\n")
+                    .append("ORDER BY st.score_count DESC, f.ranking DESC\n");
 
-            return jdbcTemplate.query(stringBuilder.toString(), (rs, rowNum) -> makeFilm(rs), dbQuery, dbQuery);
+            return queryFilms(stringBuilder.toString(), dbQuery, dbQuery);
         }
 
         String errorMessage = String.format("Параметр сортрировки %s для поиска не найден", by);
@@ -394,6 +598,204 @@ public class FilmDao implements FilmStorage {
         throw new NoSuchElementException(errorMessage);
     }
 
+    private FilmScoreChangedEvent writeScore(int filmId, int userId, int score) {
+        filmStatsStorage.lockFilmStats(filmId);
+
+        List<Integer> currentScore = jdbcTemplate.queryForList("SELECT score FROM film_score WHERE film_id = ? " +
+                "AND user_id = ?", Integer.class, filmId, userId);
+
+        if (currentScore.isEmpty()) {
+            jdbcTemplate.update("INSERT INTO film_score (film_id, user_id, score) VALUES (?, ?, ?)", filmId,
+                    userId, score);
+            filmStatsStorage.applyScoreDelta(filmId, 1, score);
+            userStorage.registerUserEvent(getAddFilmScoreEvent(userId, filmId));
+
+            log.info("Пользователь с id = {} успешно поставил оценку {} фильму c id = {}", userId, score, filmId);
+
+            return new FilmScoreChangedEvent(filmId, userId, FilmScoreChangedEvent.NO_SCORE, score);
+        }
+
+        int curScore = currentScore.get(0);
+
+        if (curScore == score) {
+            return null;
+        }
+
+        jdbcTemplate.update("UPDATE film_score SET score = ? WHERE film_id = ? AND user_id = ?", score,
+                filmId, userId);
+        filmStatsStorage.applyScoreDelta(filmId, 0, score - curScore);
+        userStorage.registerUserEvent(getUpdateFilmScoreEvent(userId, filmId));
+
+        log.info("Пользователь c id = {} успешно изменил оценку {} на {} фильму c id = {}", userId, curScore,
+                score, filmId);
+
+        return new FilmScoreChangedEvent(filmId, userId, curScore, score);
+    }
+
+    private FilmScoreChangedEvent removeScore(int filmId, int userId) {
+        filmStatsStorage.lockFilmStats(filmId);
+
+        List<Integer> currentScore = jdbcTemplate.queryForList("SELECT score FROM film_score WHERE film_id = ? " +
+                "AND user_id = ?", Integer.class, filmId, userId);
+
+        jdbcTemplate.update("DELETE FROM film_score WHERE film_id = ? AND user_id = ?", filmId, userId);
+        userStorage.registerUserEvent(getDeleteFilmScoreEvent(userId, filmId));
+
+        if (currentScore.isEmpty()) {
+            return null;
+        }
+
+        filmStatsStorage.applyScoreDelta(filmId, -1, -currentScore.get(0));
+
+        return new FilmScoreChangedEvent(filmId, userId, currentScore.get(0), FilmScoreChangedEvent.NO_SCORE);
+    }
+
+    private List<FilmScoreChangedEvent> removeScores(List<FilmScore> scores, Set<Integer> existingFilmIds,
+                                                     Set<Integer> userIds) {
+        filmStatsStorage.lockFilmStats(existingFilmIds);
+
+        Map<Long, Integer> currentScores = getCurrentScores(existingFilmIds, userIds);
+        List<Object[]> deletes = new ArrayList<>();
+        List<UserEvent> userEvents = new ArrayList<>();
+        List<FilmScoreChangedEvent> changes = new ArrayList<>();
+        Map<Integer, FilmScoreDelta> deltas = new HashMap<>();
+
+        for (FilmScore score : scores) {
+            Integer currentScore = currentScores.remove(scoreKey(score.getFilmId(), score.getUserId()));
+
+            if (currentScore != null) {
+                deletes.add(new Object[]{score.getFilmId(), score.getUserId()});
+                userEvents.add(getDeleteFilmScoreEvent(score.getUserId(), score.getFilmId()));
+                deltas.computeIfAbsent(score.getFilmId(), id -> new FilmScoreDelta()).add(-1, -currentScore);
+                changes.add(new FilmScoreChangedEvent(score.getFilmId(), score.getUserId(), currentScore,
+                        FilmScoreChangedEvent.NO_SCORE));
+            }
+        }
+
+        jdbcTemplate.batchUpdate("DELETE FROM film_score WHERE film_id = ? AND user_id = ?", deletes);
+        filmStatsStorage.applyScoreDeltas(deltas);
+        userStorage.registerUserEvents(userEvents);
+
+        return changes;
+    }
+
+    private List<FilmScoreChangedEvent> upsertScores(Collection<FilmScore> scores) {
+        Set<Integer> filmIds = new HashSet<>();
+        Set<Integer> userIds = new HashSet<>();
+
+        for (FilmScore score : scores) {
+            filmIds.add(score.getFilmId());
+            userIds.add(score.getUserId());
+        }
+
+        filmStatsStorage.lockFilmStats(filmIds);
+
+        Map<Long, Integer> currentScores = getCurrentScores(filmIds, userIds);
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<UserEvent> userEvents = new ArrayList<>();
+        List<FilmScoreChangedEvent> scoreChanges = new ArrayList<>();
+        Map<Integer, FilmScoreDelta> deltas = new HashMap<>();
+
+        for (FilmScore score : scores) {
+            int filmId = score.getFilmId();
+            int userId = score.getUserId();
+            Integer currentScore = currentScores.get(scoreKey(filmId, userId));
+
+            if (currentScore == null) {
+                inserts.add(new Object[]{filmId, userId, score.getScore()});
+                userEvents.add(getAddFilmScoreEvent(userId, filmId));
+                deltas.computeIfAbsent(filmId, id -> new FilmScoreDelta()).add(1, score.getScore());
+                scoreChanges.add(new FilmScoreChangedEvent(filmId, userId, FilmScoreChangedEvent.NO_SCORE,
+                        score.getScore()));
+            } else if (currentScore != score.getScore().intValue()) {
+                updates.add(new Object[]{score.getScore(), filmId, userId});
+                userEvents.add(getUpdateFilmScoreEvent(userId, filmId));
+                deltas.computeIfAbsent(filmId, id -> new FilmScoreDelta()).add(0, score.getScore() - currentScore);
+                scoreChanges.add(new FilmScoreChangedEvent(filmId, userId, currentScore, score.getScore()));
+            }
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO film_score (film_id, user_id, score) VALUES (?, ?, ?)", inserts);
+        jdbcTemplate.batchUpdate("UPDATE film_score SET score = ? WHERE film_id = ? AND user_id = ?", updates);
+        filmStatsStorage.applyScoreDeltas(deltas);
+        userStorage.registerUserEvents(userEvents);
+
+        return scoreChanges;
+    }
+
+    private Map<Long, Integer> getCurrentScores(Collection<Integer> filmIds, Collection<Integer> userIds) {
+        Map<Long, Integer> currentScores = new HashMap<>();
+
+        for (List<Integer> batch : BatchUtils.partition(filmIds)) {
+            namedParameterJdbcTemplate.query("SELECT film_id, user_id, score FROM film_score " +
+                            "WHERE film_id IN (:filmIds) AND user_id IN (:userIds)",
+                    Map.of("filmIds", batch, "userIds", userIds),
+                    rs -> {
+                        currentScores.put(scoreKey(rs.getInt("film_id"), rs.getInt("user_id")), rs.getInt("score"));
+                    });
+        }
+
+        return currentScores;
+    }
+
+    private static String validateScore(FilmScore score, Set<Integer> existingFilmIds, Set<Integer> existingUserIds) {
+        if (score == null || score.getFilmId() == null || score.getUserId() == null || score.getScore() == null) {
+            return "Нужно передать filmId, userId и score";
+        }
+
+        if (score.getScore() <= 0 || score.getScore() >= 11) {
+            return String.format("Оценка должна быть в диапозоне: [1; 10], ваша оценка - %d", score.getScore());
+        }
+
+        if (!existingFilmIds.contains(score.getFilmId())) {
+            return String.format("Фильм с id = %s отсутствует", score.getFilmId());
+        }
+
+        if (!existingUserIds.contains(score.getUserId())) {
+            return String.format("Пользователь с id = %s отсутствует", score.getUserId());
+        }
+
+        return null;
+    }
+
+    private static long scoreKey(int filmId, int userId) {
+        return ((long) filmId << 32) | (userId & 0xFFFFFFFFL);
+    }
+
+    private class FilmChunkHandler implements RowCallbackHandler {
+        private final int chunkSize;
+        private final Consumer<List<Film>> chunkConsumer;
+        private List<Film> chunk;
+        private long exported;
+
+        private FilmChunkHandler(int chunkSize, Consumer<List<Film>> chunkConsumer) {
+            this.chunkSize = chunkSize;
+            this.chunkConsumer = chunkConsumer;
+            this.chunk = new ArrayList<>(chunkSize);
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            chunk.add(makeFilm(rs));
+
+            if (chunk.size() == chunkSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+
+            hydrateFilms(chunk);
+            chunkConsumer.accept(chunk);
+            exported += chunk.size();
+            chunk = new ArrayList<>(chunkSize);
+        }
+    }
+
     private User makeUser(ResultSet rs) throws SQLException {
         return new User(
                 rs.getInt("user_id"),
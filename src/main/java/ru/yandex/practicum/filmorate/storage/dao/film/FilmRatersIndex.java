@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.storage.dao.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.FilmDeletedEvent;
+import ru.yandex.practicum.filmorate.event.FilmEventListener;
+import ru.yandex.practicum.filmorate.event.FilmEventPublisher;
+import ru.yandex.practicum.filmorate.event.FilmScoreChangedEvent;
+import ru.yandex.practicum.filmorate.storage.dao.SortedIntArrays;
+
+import javax.annotation.PostConstruct;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FilmRatersIndex implements FilmEventListener {
+    private static final int[] EMPTY = SortedIntArrays.EMPTY;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmEventPublisher filmEventPublisher;
+    private final ConcurrentMap<Integer, int[]> raters = new ConcurrentHashMap<>();
+
+    @Value("${filmorate.recommendations.candidates.max-raters-per-film:1000}")
+    private int maxRatersPerFilm;
+
+    @PostConstruct
+    public void init() {
+        filmEventPublisher.subscribe(this);
+        rebuild();
+    }
+
+    public void rebuild() {
+        log.info("Получен запрос на построение индекса оценивших фильмы пользователей");
+
+        RatersCollector collector = new RatersCollector();
+
+        jdbcTemplate.query("SELECT film_id, user_id FROM film_score ORDER BY film_id, user_id", collector);
+
+        Map<Integer, int[]> loaded = collector.finish();
+
+        raters.clear();
+        raters.putAll(loaded);
+
+        log.info("Индекс оценивших фильмы пользователей построен, количество фильмов = {}", loaded.size());
+    }
+
+    public int[] getRaters(int filmId) {
+        return raters.getOrDefault(filmId, EMPTY).clone();
+    }
+
+    public int[] getFilmIds() {
+        return raters.keySet().stream()
+                .mapToInt(Integer::intValue)
+                .sorted()
+                .toArray();
+    }
+
+    public int[] findCandidates(int userId, int[] filmIds) {
+        BitSet candidates = new BitSet();
+
+        for (int filmId : filmIds) {
+            int[] filmRaters = raters.getOrDefault(filmId, EMPTY);
+
+            if (filmRaters.length <= maxRatersPerFilm) {
+                for (int raterId : filmRaters) {
+                    candidates.set(raterId);
+                }
+            } else {
+                double step = (double) filmRaters.length / maxRatersPerFilm;
+                int offset = Math.floorMod(userId, filmRaters.length);
+
+                for (int i = 0; i < maxRatersPerFilm; i++) {
+                    candidates.set(filmRaters[(offset + (int) (i * step)) % filmRaters.length]);
+                }
+            }
+        }
+
+        candidates.clear(userId);
+
+        return candidates.stream().toArray();
+    }
+
+    @Override
+    public void onFilmDeleted(FilmDeletedEvent event) {
+        raters.remove(event.getFilmId());
+    }
+
+    @Override
+    public void onFilmScoreChanged(FilmScoreChangedEvent event) {
+        if (event.isAdded()) {
+            raters.compute(event.getFilmId(), (filmId, users) ->
+                    SortedIntArrays.insert(users == null ? EMPTY : users, event.getUserId()));
+        } else if (event.isRemoved()) {
+            raters.computeIfPresent(event.getFilmId(), (filmId, users) ->
+                    SortedIntArrays.remove(users, event.getUserId()));
+        }
+    }
+
+    private static class RatersCollector implements RowCallbackHandler {
+        private final Map<Integer, int[]> loaded = new HashMap<>();
+        private int currentFilmId = -1;
+        private int[] buffer = new int[16];
+        private int size;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            int filmId = rs.getInt("film_id");
+
+            if (filmId != currentFilmId) {
+                flush();
+                currentFilmId = filmId;
+            }
+
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+
+            buffer[size++] = rs.getInt("user_id");
+        }
+
+        private Map<Integer, int[]> finish() {
+            flush();
+
+            return loaded;
+        }
+
+        private void flush() {
+            if (size > 0) {
+                loaded.put(currentFilmId, Arrays.copyOf(buffer, size));
+                size = 0;
+            }
+        }
+    }
+}
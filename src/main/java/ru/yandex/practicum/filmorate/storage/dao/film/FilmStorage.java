@@ -1,15 +1,26 @@
 package ru.yandex.practicum.filmorate.storage.dao.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.model.ScoreImportError;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     List<Film> getFilms();
 
+    Page<Film> getFilmsPage(String cursor, int limit);
+
+    void exportFilms(int chunkSize, Consumer<List<Film>> chunkConsumer);
+
     Film getFilmById(int id);
 
+    List<Film> getFilmsByIds(Collection<Integer> ids);
+
     Film createNewFilm(Film film);
 
     Film updateFilm(Film film);
@@ -24,10 +35,16 @@ public interface FilmStorage {
 
     List<Film> getTopCommonFilms(int userId1, int userId2);
 
+    List<Film> getTopCommonFilms(Collection<Integer> userIds);
+
     void addScoreToFilm(int filmId, int userId, int score);
 
+    List<ScoreImportError> addScores(List<FilmScore> scores, long firstIndex);
+
     void deleteScoreFromFilm(int filmId, int userId);
 
+    void deleteScores(List<FilmScore> scores);
+
     List<Film> getDirectorFilm(int directorId, String sortBy);
 
     List<Film> searchFilms(String query, String by);
@@ -0,0 +1,320 @@
+package ru.yandex.practicum.filmorate.storage.dao.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.event.FilmDeletedEvent;
+import ru.yandex.practicum.filmorate.event.FilmEventListener;
+import ru.yandex.practicum.filmorate.event.FilmEventPublisher;
+import ru.yandex.practicum.filmorate.event.FilmScoreChangedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.dao.BatchUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PopularityLeaderboard implements FilmEventListener {
+    private static final Comparator<Entry> POPULARITY_ORDER = Comparator
+            .comparingLong((Entry entry) -> entry.count).reversed()
+            .thenComparing(PopularityLeaderboard::compareAverageDesc)
+            .thenComparingInt(entry -> entry.filmId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final FilmEventPublisher filmEventPublisher;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> global = new TreeSet<>(POPULARITY_ORDER);
+    private final Map<Integer, NavigableSet<Entry>> byGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byYear = new HashMap<>();
+    private final Map<Long, NavigableSet<Entry>> byGenreAndYear = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        filmEventPublisher.subscribe(this);
+        rebuild();
+    }
+
+    public void rebuild() {
+        log.info("Получен запрос на построение рейтинга популярности фильмов");
+
+        Map<Integer, List<Integer>> filmsGenres = new HashMap<>();
+
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genre", rs -> {
+            filmsGenres.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>()).add(rs.getInt("genre_id"));
+        });
+
+        List<Entry> loadedEntries = new ArrayList<>();
+
+        jdbcTemplate.query("SELECT f.film_id, YEAR(f.release_date) AS release_year, " +
+                "COALESCE(st.score_count, 0) AS score_count, COALESCE(st.score_sum, 0) AS score_sum\n" +
+                "FROM films AS f\n" +
+                "LEFT JOIN film_stats AS st ON f.film_id = st.film_id", rs -> {
+            int filmId = rs.getInt("film_id");
+
+            loadedEntries.add(new Entry(filmId, rs.getInt("release_year"),
+                    toArray(filmsGenres.getOrDefault(filmId, Collections.emptyList())),
+                    rs.getLong("score_count"), rs.getLong("score_sum")));
+        });
+
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            global.clear();
+            byGenre.clear();
+            byYear.clear();
+            byGenreAndYear.clear();
+
+            loadedEntries.forEach(this::link);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Рейтинг популярности построен, количество фильмов = {}", loadedEntries.size());
+    }
+
+    public void refresh(Collection<Integer> filmIds) {
+        log.info("Получен запрос на обновление рейтинга популярности фильмов {}", filmIds);
+
+        List<Entry> loadedEntries = new ArrayList<>();
+
+        for (List<Integer> batch : BatchUtils.partition(filmIds)) {
+            Map<Integer, List<Integer>> filmsGenres = new HashMap<>();
+
+            namedParameterJdbcTemplate.query("SELECT film_id, genre_id FROM film_genre WHERE film_id IN (:ids)",
+                    Map.of("ids", batch), rs -> {
+                        filmsGenres.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>())
+                                .add(rs.getInt("genre_id"));
+                    });
+
+            namedParameterJdbcTemplate.query("SELECT f.film_id, YEAR(f.release_date) AS release_year, " +
+                    "COALESCE(st.score_count, 0) AS score_count, COALESCE(st.score_sum, 0) AS score_sum\n" +
+                    "FROM films AS f\n" +
+                    "LEFT JOIN film_stats AS st ON f.film_id = st.film_id\n" +
+                    "WHERE f.film_id IN (:ids)", Map.of("ids", batch), rs -> {
+                int filmId = rs.getInt("film_id");
+
+                loadedEntries.add(new Entry(filmId, rs.getInt("release_year"),
+                        toArray(filmsGenres.getOrDefault(filmId, Collections.emptyList())),
+                        rs.getLong("score_count"), rs.getLong("score_sum")));
+            });
+        }
+
+        lock.writeLock().lock();
+        try {
+            filmIds.forEach(this::unlink);
+            loadedEntries.forEach(this::link);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Integer> getTopFilmIds(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> view = getView(genreId, year);
+
+            if (view == null) {
+                return Collections.emptyList();
+            }
+
+            List<Integer> filmIds = new ArrayList<>(Math.min(count, view.size()));
+
+            for (Entry entry : view) {
+                if (filmIds.size() == count) {
+                    break;
+                }
+
+                filmIds.add(entry.filmId);
+            }
+
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Integer> sortByPopularity(int[] filmIds) {
+        List<Entry> found = new ArrayList<>(filmIds.length);
+
+        lock.readLock().lock();
+        try {
+            for (int filmId : filmIds) {
+                Entry entry = entries.get(filmId);
+
+                if (entry != null) {
+                    found.add(entry);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        found.sort(POPULARITY_ORDER);
+
+        List<Integer> sortedIds = new ArrayList<>(found.size());
+
+        for (Entry entry : found) {
+            sortedIds.add(entry.filmId);
+        }
+
+        return sortedIds;
+    }
+
+    public List<Integer> getPopularityOrder() {
+        return getTopFilmIds(Integer.MAX_VALUE, null, null);
+    }
+
+    @Override
+    public void onFilmChanged(FilmChangedEvent event) {
+        Film film = event.getFilm();
+        int[] genreIds = film.getGenres() == null ? new int[0] :
+                film.getGenres().stream().mapToInt(Genre::getId).distinct().toArray();
+
+        lock.writeLock().lock();
+        try {
+            Entry current = unlink(film.getId());
+            long count = current == null ? 0 : current.count;
+            long sum = current == null ? 0 : current.sum;
+
+            link(new Entry(film.getId(), film.getReleaseDate().getYear(), genreIds, count, sum));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmDeleted(FilmDeletedEvent event) {
+        lock.writeLock().lock();
+        try {
+            unlink(event.getFilmId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onFilmScoreChanged(FilmScoreChangedEvent event) {
+        long countDelta = (event.isAdded() ? 1 : 0) - (event.isRemoved() ? 1 : 0);
+        long sumDelta = event.getNewScore() - event.getOldScore();
+
+        lock.writeLock().lock();
+        try {
+            Entry current = unlink(event.getFilmId());
+
+            if (current == null) {
+                log.warn("Фильм с id = {} отсутствует в рейтинге популярности", event.getFilmId());
+
+                return;
+            }
+
+            link(new Entry(current.filmId, current.year, current.genreIds, current.count + countDelta,
+                    current.sum + sumDelta));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private NavigableSet<Entry> getView(Integer genreId, Integer year) {
+        if (genreId != null && year != null) {
+            return byGenreAndYear.get(genreYearKey(genreId, year));
+        }
+
+        if (genreId != null) {
+            return byGenre.get(genreId);
+        }
+
+        if (year != null) {
+            return byYear.get(year);
+        }
+
+        return global;
+    }
+
+    private void link(Entry entry) {
+        entries.put(entry.filmId, entry);
+        global.add(entry);
+        byYear.computeIfAbsent(entry.year, key -> new TreeSet<>(POPULARITY_ORDER)).add(entry);
+
+        for (int genreId : entry.genreIds) {
+            byGenre.computeIfAbsent(genreId, key -> new TreeSet<>(POPULARITY_ORDER)).add(entry);
+            byGenreAndYear.computeIfAbsent(genreYearKey(genreId, entry.year), key -> new TreeSet<>(POPULARITY_ORDER))
+                    .add(entry);
+        }
+    }
+
+    private Entry unlink(int filmId) {
+        Entry entry = entries.remove(filmId);
+
+        if (entry == null) {
+            return null;
+        }
+
+        global.remove(entry);
+        removeFromView(byYear, entry.year, entry);
+
+        for (int genreId : entry.genreIds) {
+            removeFromView(byGenre, genreId, entry);
+            removeFromView(byGenreAndYear, genreYearKey(genreId, entry.year), entry);
+        }
+
+        return entry;
+    }
+
+    private static <K> void removeFromView(Map<K, NavigableSet<Entry>> views, K key, Entry entry) {
+        NavigableSet<Entry> view = views.get(key);
+
+        if (view != null) {
+            view.remove(entry);
+
+            if (view.isEmpty()) {
+                views.remove(key);
+            }
+        }
+    }
+
+    private static long genreYearKey(int genreId, int year) {
+        return ((long) genreId << 32) | (year & 0xFFFFFFFFL);
+    }
+
+    private static int compareAverageDesc(Entry first, Entry second) {
+        return Long.compare(second.sum * Math.max(first.count, 1), first.sum * Math.max(second.count, 1));
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static class Entry {
+        private final int filmId;
+        private final int year;
+        private final int[] genreIds;
+        private final long count;
+        private final long sum;
+
+        private Entry(int filmId, int year, int[] genreIds, long count, long sum) {
+            this.filmId = filmId;
+            this.year = year;
+            this.genreIds = genreIds;
+            this.count = count;
+            this.sum = sum;
+        }
+    }
+}
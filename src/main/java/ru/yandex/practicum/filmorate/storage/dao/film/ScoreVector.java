@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.storage.dao.film;
+
+public final class ScoreVector {
+    static final ScoreVector EMPTY = new ScoreVector(new int[0], new byte[0], 0, 0);
+
+    private final int[] filmIds;
+    private final byte[] scores;
+    private final int from;
+    private final int to;
+
+    ScoreVector(int[] filmIds, byte[] scores, int from, int to) {
+        this.filmIds = filmIds;
+        this.scores = scores;
+        this.from = from;
+        this.to = to;
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    public int filmId(int position) {
+        return filmIds[from + position];
+    }
+
+    public int score(int position) {
+        return scores[from + position];
+    }
+
+    public int scoreOf(int filmId) {
+        int position = indexOf(filmId);
+
+        return position < 0 ? 0 : scores[from + position];
+    }
+
+    public int indexOf(int filmId) {
+        int low = from;
+        int high = to - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = filmIds[middle];
+
+            if (middleId < filmId) {
+                low = middle + 1;
+            } else if (middleId > filmId) {
+                high = middle - 1;
+            } else {
+                return middle - from;
+            }
+        }
+
+        return -(low - from) - 1;
+    }
+
+    public long squaredNorm() {
+        long sum = 0;
+
+        for (int i = from; i < to; i++) {
+            sum += scores[i] * scores[i];
+        }
+
+        return sum;
+    }
+
+    public long dot(ScoreVector other) {
+        long sum = 0;
+        int i = from;
+        int j = other.from;
+
+        while (i < to && j < other.to) {
+            int filmId = filmIds[i];
+            int otherFilmId = other.filmIds[j];
+
+            if (filmId < otherFilmId) {
+                i++;
+            } else if (filmId > otherFilmId) {
+                j++;
+            } else {
+                sum += scores[i] * other.scores[j];
+                i++;
+                j++;
+            }
+        }
+
+        return sum;
+    }
+
+    public double cosine(ScoreVector other) {
+        return dot(other) / (Math.sqrt(squaredNorm()) * Math.sqrt(other.squaredNorm()));
+    }
+
+    public int[] filmIds() {
+        int[] copy = new int[size()];
+
+        System.arraycopy(filmIds, from, copy, 0, copy.length);
+
+        return copy;
+    }
+
+    ScoreVector with(int filmId, int score) {
+        int position = indexOf(filmId);
+        int size = size();
+
+        if (position >= 0) {
+            int[] updatedIds = new int[size];
+            byte[] updatedScores = new byte[size];
+
+            System.arraycopy(filmIds, from, updatedIds, 0, size);
+            System.arraycopy(scores, from, updatedScores, 0, size);
+            updatedScores[position] = (byte) score;
+
+            return new ScoreVector(updatedIds, updatedScores, 0, size);
+        }
+
+        int insertAt = -position - 1;
+        int[] updatedIds = new int[size + 1];
+        byte[] updatedScores = new byte[size + 1];
+
+        System.arraycopy(filmIds, from, updatedIds, 0, insertAt);
+        System.arraycopy(scores, from, updatedScores, 0, insertAt);
+        updatedIds[insertAt] = filmId;
+        updatedScores[insertAt] = (byte) score;
+        System.arraycopy(filmIds, from + insertAt, updatedIds, insertAt + 1, size - insertAt);
+        System.arraycopy(scores, from + insertAt, updatedScores, insertAt + 1, size - insertAt);
+
+        return new ScoreVector(updatedIds, updatedScores, 0, size + 1);
+    }
+
+    ScoreVector without(int filmId) {
+        int position = indexOf(filmId);
+
+        if (position < 0) {
+            return this;
+        }
+
+        int size = size();
+        int[] updatedIds = new int[size - 1];
+        byte[] updatedScores = new byte[size - 1];
+
+        System.arraycopy(filmIds, from, updatedIds, 0, position);
+        System.arraycopy(scores, from, updatedScores, 0, position);
+        System.arraycopy(filmIds, from + position + 1, updatedIds, position, size - position - 1);
+        System.arraycopy(scores, from + position + 1, updatedScores, position, size - position - 1);
+
+        return new ScoreVector(updatedIds, updatedScores, 0, size - 1);
+    }
+
+    void copyTo(int[] targetIds, byte[] targetScores, int offset) {
+        System.arraycopy(filmIds, from, targetIds, offset, size());
+        System.arraycopy(scores, from, targetScores, offset, size());
+    }
+}
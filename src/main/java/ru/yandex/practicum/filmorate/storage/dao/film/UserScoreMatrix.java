@@ -0,0 +1,246 @@
+package ru.yandex.practicum.filmorate.storage.dao.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.FilmEventListener;
+import ru.yandex.practicum.filmorate.event.FilmEventPublisher;
+import ru.yandex.practicum.filmorate.event.FilmScoreChangedEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class UserScoreMatrix implements FilmEventListener {
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmEventPublisher filmEventPublisher;
+    private final ConcurrentMap<Integer, ScoreVector> overlay = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "score-matrix-compaction");
+
+        thread.setDaemon(true);
+
+        return thread;
+    });
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile long baseVersion;
+
+    @Value("${filmorate.recommendations.matrix.compact-threshold:10000}")
+    private int compactThreshold;
+
+    @PostConstruct
+    public void init() {
+        filmEventPublisher.subscribe(this);
+        rebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compactionExecutor.shutdownNow();
+    }
+
+    public void rebuild() {
+        log.info("Получен запрос на построение матрицы оценок пользователей");
+
+        MatrixCollector collector = new MatrixCollector();
+
+        jdbcTemplate.query("SELECT user_id, film_id, score FROM film_score ORDER BY user_id, film_id", collector);
+
+        synchronized (this) {
+            snapshot = collector.finish();
+            overlay.clear();
+            baseVersion = versionSequence.incrementAndGet();
+            versions.clear();
+        }
+
+        log.info("Матрица оценок построена, пользователей = {}, оценок = {}", snapshot.userIds.length,
+                snapshot.filmIds.length);
+    }
+
+    public ScoreVector getScoreVector(int userId) {
+        ScoreVector updated = overlay.get(userId);
+
+        return updated != null ? updated : snapshot.row(userId);
+    }
+
+    public long getVersion(int userId) {
+        Long version = versions.get(userId);
+
+        return version != null ? version : baseVersion;
+    }
+
+    public double cosineSimilarity(int userId, int otherUserId) {
+        return getScoreVector(userId).cosine(getScoreVector(otherUserId));
+    }
+
+    @Override
+    public void onFilmScoreChanged(FilmScoreChangedEvent event) {
+        synchronized (this) {
+            ScoreVector current = getScoreVector(event.getUserId());
+            ScoreVector updated = event.isRemoved() ? current.without(event.getFilmId()) :
+                    current.with(event.getFilmId(), event.getNewScore());
+
+            overlay.put(event.getUserId(), updated);
+            versions.put(event.getUserId(), versionSequence.incrementAndGet());
+        }
+
+        if (overlay.size() >= compactThreshold && compactionScheduled.compareAndSet(false, true)) {
+            compactionExecutor.execute(() -> {
+                try {
+                    compact();
+                } catch (RuntimeException e) {
+                    log.error("Не удалось уплотнить матрицу оценок", e);
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    public void compact() {
+        Snapshot current = snapshot;
+        Map<Integer, ScoreVector> updatedRows = new HashMap<>(overlay);
+        int[] userIds = mergeUserIds(current.userIds, updatedRows.keySet().stream()
+                .mapToInt(Integer::intValue)
+                .toArray());
+        ScoreVector[] rows = new ScoreVector[userIds.length];
+        int users = 0;
+        int total = 0;
+
+        for (int userId : userIds) {
+            ScoreVector updated = updatedRows.get(userId);
+            ScoreVector row = updated != null ? updated : current.row(userId);
+
+            if (!row.isEmpty()) {
+                userIds[users] = userId;
+                rows[users++] = row;
+                total += row.size();
+            }
+        }
+
+        int[] rowOffsets = new int[users + 1];
+        int[] filmIds = new int[total];
+        byte[] scores = new byte[total];
+
+        for (int i = 0; i < users; i++) {
+            rows[i].copyTo(filmIds, scores, rowOffsets[i]);
+            rowOffsets[i + 1] = rowOffsets[i] + rows[i].size();
+        }
+
+        Snapshot compacted = new Snapshot(Arrays.copyOf(userIds, users), rowOffsets, filmIds, scores);
+
+        synchronized (this) {
+            if (snapshot != current) {
+                log.info("Матрица оценок была перестроена во время уплотнения, результат уплотнения отброшен");
+
+                return;
+            }
+
+            snapshot = compacted;
+            updatedRows.forEach(overlay::remove);
+        }
+
+        log.info("Матрица оценок уплотнена, пользователей = {}, оценок = {}", users, total);
+    }
+
+    private static int[] mergeUserIds(int[] sorted, int[] updated) {
+        int[] merged = Arrays.copyOf(sorted, sorted.length + updated.length);
+
+        System.arraycopy(updated, 0, merged, sorted.length, updated.length);
+        Arrays.sort(merged);
+
+        int size = 0;
+
+        for (int i = 0; i < merged.length; i++) {
+            if (size == 0 || merged[size - 1] != merged[i]) {
+                merged[size++] = merged[i];
+            }
+        }
+
+        return Arrays.copyOf(merged, size);
+    }
+
+    private static class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(new int[0], new int[]{0}, new int[0], new byte[0]);
+
+        private final int[] userIds;
+        private final int[] rowOffsets;
+        private final int[] filmIds;
+        private final byte[] scores;
+
+        private Snapshot(int[] userIds, int[] rowOffsets, int[] filmIds, byte[] scores) {
+            this.userIds = userIds;
+            this.rowOffsets = rowOffsets;
+            this.filmIds = filmIds;
+            this.scores = scores;
+        }
+
+        private ScoreVector row(int userId) {
+            int row = Arrays.binarySearch(userIds, userId);
+
+            if (row < 0) {
+                return ScoreVector.EMPTY;
+            }
+
+            return new ScoreVector(filmIds, scores, rowOffsets[row], rowOffsets[row + 1]);
+        }
+    }
+
+    private static class MatrixCollector implements RowCallbackHandler {
+        private int[] userIds = new int[16];
+        private int[] rowOffsets = new int[17];
+        private int[] filmIds = new int[64];
+        private byte[] scores = new byte[64];
+        private int users;
+        private int size;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            int userId = rs.getInt("user_id");
+
+            if (users == 0 || userIds[users - 1] != userId) {
+                if (users == userIds.length) {
+                    userIds = Arrays.copyOf(userIds, users * 2);
+                    rowOffsets = Arrays.copyOf(rowOffsets, users * 2 + 1);
+                }
+
+                userIds[users] = userId;
+                rowOffsets[users++] = size;
+            }
+
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+
+            filmIds[size] = rs.getInt("film_id");
+            scores[size++] = (byte) rs.getInt("score");
+        }
+
+        private Snapshot finish() {
+            rowOffsets[users] = size;
+
+            return new Snapshot(Arrays.copyOf(userIds, users), Arrays.copyOf(rowOffsets, users + 1),
+                    Arrays.copyOf(filmIds, size), Arrays.copyOf(scores, size));
+        }
+    }
+}
@@ -3,11 +3,14 @@ package ru.yandex.practicum.filmorate.storage.dao.film.genre;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.dao.BatchUtils;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmCache;
 
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
@@ -18,55 +21,92 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class GenreDao implements GenreStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final FilmCache filmCache;
+    private volatile Map<Integer, Genre> genres = Map.of();
+    private volatile List<Genre> sortedGenres = List.of();
+
+    @PostConstruct
+    @Override
+    public void reloadGenres() {
+        log.info("Получен запрос на загрузку справочника жанров");
+
+        List<Genre> loadedGenres = jdbcTemplate.query("SELECT * FROM genres", (rs, rowNum) -> makeGenre(rs))
+                .stream()
+                .sorted(Comparator.comparing(Genre::getId))
+                .collect(Collectors.toUnmodifiableList());
+
+        Map<Integer, Genre> genresById = new LinkedHashMap<>();
+        loadedGenres.forEach(genre -> genresById.put(genre.getId(), genre));
+
+        genres = genresById;
+        sortedGenres = loadedGenres;
+        filmCache.invalidateAll();
+
+        log.info("Справочник жанров загружен, количество жанров = {}", loadedGenres.size());
+    }
 
     @Override
     public Genre getGenreById(int id) {
         log.info("Получен запрос на отправку жанра с id = {}", id);
 
-        SqlRowSet filmRows = jdbcTemplate.queryForRowSet("SELECT * FROM genres WHERE genre_id = ?", id);
+        Genre genre = genres.get(id);
 
-        if (filmRows.next()) {
+        if (genre != null) {
             log.info("Жанр с id = {} успешно отправлен клиенту", id);
 
-            return new Genre(
-                    filmRows.getInt("genre_id"),
-                    filmRows.getString("genre"));
+            return genre;
         }
 
-        throw new NoSuchElementException(String.format("Рейтинг с id = %s отсутствует", id));
+        throw new NoSuchElementException(String.format("Жанр с id = %s отсутствует", id));
     }
 
     @Override
     public List<Genre> getGenres() {
         log.info("Получен запрос на отправку всех жанров");
 
-        String sql = "SELECT * FROM genres";
-
         log.info("Все жанры были успешно отправлены клиенту!");
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeGenre(rs)).stream().sorted(Comparator.comparing(Genre::getId))
-                .collect(Collectors.toList());
+        return sortedGenres;
     }
 
     @Override
     public List<Genre> getFilmsGenres(int id) {
         log.info("Получен запрос на отправку всех жанров фильму с id = {}", id);
 
-        String sql = "\n" +
-                "SELECT *\n" +
-                "FROM genres AS g\n" +
-                "JOIN film_genre AS fg ON g.genre_id = fg.genre_id\n" +
-                "WHERE fg.film_id = ?";
+        return getFilmsGenres(List.of(id)).getOrDefault(id, new ArrayList<>());
+    }
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeGenre(rs), id).stream().sorted(Comparator
-                .comparing(Genre::getId)).collect(Collectors.toList());
+    @Override
+    public Map<Integer, List<Genre>> getFilmsGenres(Collection<Integer> filmIds) {
+        log.info("Получен запрос на отправку жанров для {} фильмов", filmIds.size());
+
+        String sql = "SELECT fg.film_id, fg.genre_id\n" +
+                "FROM film_genre AS fg\n" +
+                "WHERE fg.film_id IN (:ids)\n" +
+                "ORDER BY fg.film_id, fg.genre_id";
+
+        Map<Integer, Genre> currentGenres = genres;
+        Map<Integer, List<Genre>> filmsGenres = new HashMap<>();
+
+        for (List<Integer> batch : BatchUtils.partition(filmIds)) {
+            namedParameterJdbcTemplate.query(sql, Map.of("ids", batch), rs -> {
+                Genre genre = currentGenres.get(rs.getInt("genre_id"));
+
+                if (genre != null) {
+                    filmsGenres.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>()).add(genre);
+                }
+            });
+        }
+
+        return filmsGenres;
     }
 
     public void deleteFilmGenres(Film film, List<Integer> removedFilmGenres) {
         log.info(String.format("Получен запрос на удаление жанров фильма %s", film.getName()));
 
         removedFilmGenres.forEach(genre -> {
-            jdbcTemplate.update("DELETE FROM film_genre WHERE genre_id = ? ", genre);
+            jdbcTemplate.update("DELETE FROM film_genre WHERE film_id = ? AND genre_id = ? ", film.getId(), genre);
 
             log.info("Жанр {} успешно удален у фильма {}", genre, film.getName());
         });
@@ -93,6 +133,7 @@ public class GenreDao implements GenreStorage {
 
         if (film.getGenres() == null) {
             deleteFilmGenres(film.getId());
+            filmCache.invalidate(film.getId());
             return;
         }
 
@@ -112,6 +153,8 @@ public class GenreDao implements GenreStorage {
         if (!addedFilmGenres.isEmpty()) {
             addGenresToFilm(film, addedFilmGenres);
         }
+
+        filmCache.invalidate(film.getId());
     }
 
     private Genre makeGenre(ResultSet rs) throws SQLException {
@@ -3,7 +3,9 @@ package ru.yandex.practicum.filmorate.storage.dao.film.genre;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface GenreStorage {
     Genre getGenreById(int id);
@@ -12,5 +14,9 @@ public interface GenreStorage {
 
     List<Genre> getFilmsGenres(int id);
 
+    Map<Integer, List<Genre>> getFilmsGenres(Collection<Integer> filmIds);
+
     void updateFilmGenres(Film film);
+
+    void reloadGenres();
 }
@@ -3,14 +3,19 @@ package ru.yandex.practicum.filmorate.storage.dao.film.rating;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmCache;
 
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.stream.Collectors;
 
@@ -19,19 +24,40 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RatingDao implements RatingStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final FilmCache filmCache;
+    private volatile Map<Integer, Rating> ratings = Map.of();
+    private volatile List<Rating> sortedRatings = List.of();
+
+    @PostConstruct
+    @Override
+    public void reloadRatings() {
+        log.info("Получен запрос на загрузку справочника рейтингов");
+
+        List<Rating> loadedRatings = jdbcTemplate.query("SELECT * FROM ratings", (rs, rowNum) -> makeRating(rs))
+                .stream()
+                .sorted(Comparator.comparing(Rating::getId))
+                .collect(Collectors.toUnmodifiableList());
+
+        Map<Integer, Rating> ratingsById = new LinkedHashMap<>();
+        loadedRatings.forEach(rating -> ratingsById.put(rating.getId(), rating));
+
+        ratings = ratingsById;
+        sortedRatings = loadedRatings;
+        filmCache.invalidateAll();
+
+        log.info("Справочник рейтингов загружен, количество рейтингов = {}", loadedRatings.size());
+    }
 
     @Override
     public Rating getRatingById(int id) {
         log.info("Получен запрос на отправку рейтинга с id = {}", id);
 
-        SqlRowSet filmRows = jdbcTemplate.queryForRowSet("SELECT * FROM ratings WHERE rating_id = ?", id);
+        Rating rating = ratings.get(id);
 
-        if (filmRows.next()) {
+        if (rating != null) {
             log.info("Рейтинг с id = {} успешно отправлен клиенту", id);
 
-            return new Rating(
-                    filmRows.getInt("rating_id"),
-                    filmRows.getString("rating"));
+            return rating;
         }
 
         throw new NoSuchElementException(String.format("Рейтинг с id = %s отсутствует", id));
@@ -41,12 +67,25 @@ public class RatingDao implements RatingStorage {
     public List<Rating> getRatings() {
         log.info("Получен запрос на отправку всех рейтингов");
 
-        String sql = "SELECT * FROM ratings";
-
         log.info("Все рейтинги были успешно отправлены клиенту!");
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeRating(rs)).stream().sorted(Comparator
-                .comparing(Rating::getId)).collect(Collectors.toList());
+        return sortedRatings;
+    }
+
+    @Override
+    public Map<Integer, Rating> getRatingsByIds(Collection<Integer> ids) {
+        Map<Integer, Rating> currentRatings = ratings;
+        Map<Integer, Rating> result = new HashMap<>();
+
+        for (Integer id : ids) {
+            Rating rating = currentRatings.get(id);
+
+            if (rating != null) {
+                result.put(id, rating);
+            }
+        }
+
+        return result;
     }
 
     private Rating makeRating(ResultSet rs) throws SQLException {
@@ -54,4 +93,4 @@ public class RatingDao implements RatingStorage {
                 rs.getInt("rating_id"),
                 rs.getString("rating"));
     }
-}
\ No newline at end of file
+}
@@ -2,10 +2,16 @@ package ru.yandex.practicum.filmorate.storage.dao.film.rating;
 
 import ru.yandex.practicum.filmorate.model.Rating;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface RatingStorage {
     Rating getRatingById(int id);
 
     List<Rating> getRatings();
+
+    Map<Integer, Rating> getRatingsByIds(Collection<Integer> ids);
+
+    void reloadRatings();
 }
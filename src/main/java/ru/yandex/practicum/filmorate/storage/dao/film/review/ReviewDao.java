@@ -6,10 +6,10 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
-import ru.yandex.practicum.filmorate.model.Film;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.model.Review;
-import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.storage.dao.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.storage.dao.MutationLocks;
 import ru.yandex.practicum.filmorate.storage.dao.user.UserStorage;
 
 import java.sql.ResultSet;
@@ -26,16 +26,18 @@ import static ru.yandex.practicum.filmorate.service.UserEventFactory.*;
 @Slf4j
 public class ReviewDao implements ReviewStorage {
     private final JdbcTemplate jdbcTemplate;
-    private final FilmStorage filmStorage;
     private final UserStorage userStorage;
+    private final LiveIdRegistry liveIds;
+    private final MutationLocks mutationLocks;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
     public Review createNewReview(Review review) {
         log.info("Получен запрос на создание нового отзыва фильму c id = {} от пользователя c id = {}",
                 review.getFilmId(), review.getUserId());
 
-        Film film = filmStorage.getFilmById(review.getFilmId());
-        User user = userStorage.getUserById(review.getUserId());
+        liveIds.films().require(review.getFilmId());
+        liveIds.users().require(review.getUserId());
 
         SimpleJdbcInsert jdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
                 .withTableName("reviews")
@@ -50,9 +52,11 @@ public class ReviewDao implements ReviewStorage {
 
         Number generatedId = jdbcInsert.executeAndReturnKey(parameters);
 
-        log.info("Успешно создан отзыв фильму с id = {} от пользователя с id = {}", film.getId(), user.getId());
+        log.info("Успешно создан отзыв фильму с id = {} от пользователя с id = {}", review.getFilmId(),
+                review.getUserId());
 
-        userStorage.registerUserEvent(getAddReviewEvent(user.getId(), generatedId.intValue()));
+        liveIds.reviews().add(generatedId.intValue());
+        userStorage.registerUserEvent(getAddReviewEvent(review.getUserId(), generatedId.intValue()));
 
         return getReviewById(generatedId.intValue());
     }
@@ -63,13 +67,14 @@ public class ReviewDao implements ReviewStorage {
                 review.getFilmId(), review.getUserId());
 
         Review reviewFromDb = getReviewById(review.getReviewId());
-        Film film = filmStorage.getFilmById(review.getFilmId());
-        User user = userStorage.getUserById(review.getUserId());
+        liveIds.films().require(review.getFilmId());
+        liveIds.users().require(review.getUserId());
 
         jdbcTemplate.update("UPDATE reviews SET is_positive = ?, content = ? WHERE review_id = ?",
                 review.getIsPositive(), review.getContent(), review.getReviewId());
 
-        log.info("Успешно обновлен отзыв у фильма с id = {} от пользователя с id = {}", film.getId(), user.getId());
+        log.info("Успешно обновлен отзыв у фильма с id = {} от пользователя с id = {}", review.getFilmId(),
+                review.getUserId());
 
         userStorage.registerUserEvent(getUpdateReviewEvent(reviewFromDb.getUserId(), review.getReviewId()));
 
@@ -81,12 +86,12 @@ public class ReviewDao implements ReviewStorage {
         log.info("Получен запрос на удаление отзыва с id = {}", id);
 
         Review review = getReviewById(id);
-        Film film = filmStorage.getFilmById(review.getFilmId());
-        User user = userStorage.getUserById(review.getUserId());
 
         jdbcTemplate.update("DELETE FROM reviews WHERE review_id = ?", id);
+        liveIds.reviews().remove(id);
 
-        log.info("Успешно удален отзыв у фильма с id = {} от пользовател c id = {}", film.getId(), user.getId());
+        log.info("Успешно удален отзыв у фильма с id = {} от пользовател c id = {}", review.getFilmId(),
+                review.getUserId());
 
         userStorage.registerUserEvent(getDeleteReviewEvent(review.getUserId(), id));
     }
@@ -124,10 +129,8 @@ public class ReviewDao implements ReviewStorage {
         sqlBuilder.append("SELECT r.*\n")
                 .append("FROM reviews AS r\n");
 
-        Film film = null;
-
         if (id != 0) {
-            film = filmStorage.getFilmById(id);
+            liveIds.films().require(id);
 
             sqlBuilder.append("WHERE r.film_id = ?\n");
         }
@@ -138,7 +141,7 @@ public class ReviewDao implements ReviewStorage {
         String sql = sqlBuilder.toString();
 
         if (id != 0) {
-            log.info("Фильму с id = {} успешно отправлено {} отзывов", film.getId(), limit);
+            log.info("Фильму с id = {} успешно отправлено {} отзывов", id, limit);
 
             return jdbcTemplate.query(sql, (rs, rowNum) -> makeReview(rs), id, limit);
         }
@@ -152,108 +155,112 @@ public class ReviewDao implements ReviewStorage {
     public void addLikeToReview(int reviewId, int userId) {
         log.info("Получен запрос на добавлене лайка отзыву с id = {} от пользователя с id = {}", reviewId, userId);
 
-        getReviewById(reviewId);
-        User user = userStorage.getUserById(userId);
-
-        SqlRowSet reviewRows = jdbcTemplate.queryForRowSet("SELECT * FROM review_like WHERE review_id = ? AND " +
-                "user_id = ?", reviewId, userId);
-
-        if (reviewRows.next()) {
-            if (!reviewRows.getBoolean("is_positive")) {
-                jdbcTemplate.update("UPDATE review_like SET is_positive = true WHERE review_id = ? AND user_id = ?",
-                        reviewId, userId);
-
-                log.info("Успешно обновлен дизлайк на лайк у отзыва с id = {} от пользователя с id = {}", reviewId, user.getId());
+        liveIds.reviews().require(reviewId);
+        liveIds.users().require(userId);
 
-                jdbcTemplate.update("UPDATE reviews SET useful = useful + 1 WHERE review_id = ?", reviewId);
+        mutationLocks.reviewVotes().withLock(reviewId, () ->
+                transactionTemplate.execute(status -> putVote(reviewId, userId, true)));
+    }
 
-                log.info("Успешно увиличилась полезность на 1 единицу у отзыва с id = {}", reviewId);
+    @Override
+    public void addDislikeToReview(int reviewId, int userId) {
+        log.info("Получен запрос на добавлене дизлайка отзыву с id = {} от пользователя с id = {}", reviewId, userId);
 
-                return;
-            }
+        liveIds.reviews().require(reviewId);
+        liveIds.users().require(userId);
 
-            return;
-        }
-
-        jdbcTemplate.update("INSERT INTO review_like (review_id, user_id, is_positive) VALUES (?, ?, true)",
-                reviewId, userId);
+        mutationLocks.reviewVotes().withLock(reviewId, () ->
+                transactionTemplate.execute(status -> putVote(reviewId, userId, false)));
+    }
 
-        log.info("Успешно поставлен лайк отзыву с id = {} от пользователя c id = {}", reviewId, user.getId());
+    @Override
+    public void deleteLikeFromReview(int reviewId, int userId) {
+        log.info("Получен запрос на удаление лайка у отзыва с id = {} от пользователя с id = {}", reviewId, userId);
 
-        jdbcTemplate.update("UPDATE reviews SET useful = useful + 1  WHERE review_id = ?", reviewId);
+        liveIds.reviews().require(reviewId);
+        liveIds.users().require(userId);
 
-        log.info("Успешно увиличилась полезность на 1 единицу у отзыва с id = {}", reviewId);
+        mutationLocks.reviewVotes().withLock(reviewId, () ->
+                transactionTemplate.execute(status -> removeVote(reviewId, userId, true)));
     }
 
     @Override
-    public void addDislikeToReview(int reviewId, int userId) {
-        log.info("Получен запрос на добавлене дизлайка отзыву с id = {} от пользователя с id = {}", reviewId, userId);
+    public void deleteDislikeFromReview(int reviewId, int userId) {
+        log.info("Получен запрос на удаление дизлайка у отзыва с id = {} от пользователя с id = {}", reviewId, userId);
 
-        getReviewById(reviewId);
-        User user = userStorage.getUserById(userId);
+        liveIds.reviews().require(reviewId);
+        liveIds.users().require(userId);
 
-        SqlRowSet reviewRows = jdbcTemplate.queryForRowSet("SELECT * FROM review_like WHERE review_id = ? AND " +
-                "user_id = ?", reviewId, userId);
+        mutationLocks.reviewVotes().withLock(reviewId, () ->
+                transactionTemplate.execute(status -> removeVote(reviewId, userId, false)));
+    }
 
-        if (reviewRows.next()) {
-            if (reviewRows.getBoolean("is_positive")) {
-                jdbcTemplate.update("UPDATE review_like SET is_positive = false WHERE review_id = ? AND user_id = ?",
-                        reviewId, userId);
+    private Integer putVote(int reviewId, int userId, boolean isPositive) {
+        lockReview(reviewId);
 
-                log.info("Успешно обновлен лайк на дизлайк у отзыва с id = {} от пользователя c id = {}", reviewId, user.getId());
+        List<Boolean> currentVote = jdbcTemplate.queryForList("SELECT is_positive FROM review_like " +
+                "WHERE review_id = ? AND user_id = ?", Boolean.class, reviewId, userId);
+        int usefulDelta = isPositive ? 1 : -1;
 
-                jdbcTemplate.update("UPDATE reviews SET useful = useful - 1 WHERE review_id = ?", reviewId);
+        if (!currentVote.isEmpty()) {
+            if (currentVote.get(0) == isPositive) {
+                return 0;
+            }
 
-                log.info("Успешно уменьшилась полезность на 1 единицу у отзыва с id = {}", reviewId);
+            jdbcTemplate.update("UPDATE review_like SET is_positive = ? WHERE review_id = ? AND user_id = ?",
+                    isPositive, reviewId, userId);
 
-                return;
-            }
+            log.info("Успешно обновлена оценка отзыва с id = {} от пользователя с id = {} на {}", reviewId, userId,
+                    isPositive ? "лайк" : "дизлайк");
 
-            return;
-        }
+            usefulDelta *= 2;
+        } else {
+            jdbcTemplate.update("INSERT INTO review_like (review_id, user_id, is_positive) VALUES (?, ?, ?)",
+                    reviewId, userId, isPositive);
 
-        jdbcTemplate.update("INSERT INTO review_like (review_id, user_id, is_positive) VALUES (?, ?, false)",
-                reviewId, userId);
+            log.info("Успешно поставлен {} отзыву с id = {} от пользователя c id = {}",
+                    isPositive ? "лайк" : "дизлайк", reviewId, userId);
+        }
 
-        log.info("Успешно поставлен дизлайк отзыву с id = {} от пользователя c id = {}", reviewId, user.getId());
+        jdbcTemplate.update("UPDATE reviews SET useful = useful + ? WHERE review_id = ?", usefulDelta, reviewId);
 
-        jdbcTemplate.update("UPDATE reviews SET useful = useful - 1 WHERE review_id = ?", reviewId);
+        log.info("Полезность отзыва с id = {} изменилась на {}", reviewId, usefulDelta);
 
-        log.info("Успешно уменьшилась полезность на 1 единицу у отзыва с id = {}", reviewId);
+        return usefulDelta;
     }
 
-    @Override
-    public void deleteLikeFromReview(int reviewId, int userId) {
-        log.info("Получен запрос на удаление лайка у отзыва с id = {} от пользователя с id = {}", reviewId, userId);
+    private Integer removeVote(int reviewId, int userId, boolean isPositive) {
+        lockReview(reviewId);
 
-        getReviewById(reviewId);
-        User user = userStorage.getUserById(userId);
+        int deleted = jdbcTemplate.update("DELETE FROM review_like WHERE review_id = ? AND user_id = ? " +
+                "AND is_positive = ?", reviewId, userId, isPositive);
 
-        jdbcTemplate.update("DELETE FROM review_like WHERE review_id = ? AND user_id = ? AND is_positive = true",
-                reviewId, userId);
+        if (deleted == 0) {
+            log.info("У отзыва с id = {} отсутствует {} от пользователя с id = {}", reviewId,
+                    isPositive ? "лайк" : "дизлайк", userId);
 
-        log.info("Успешно удален лайк у отзыва с id = {} от пользователя с id = {}", reviewId, user.getId());
-
-        jdbcTemplate.update("UPDATE reviews SET useful = useful - 1 WHERE review_id = ?", reviewId);
+            return 0;
+        }
 
-        log.info("Успешно уменьшилась полезность на 1 единицу у отзыва с id = {}", reviewId);
-    }
+        log.info("Успешно удален {} у отзыва с id = {} от пользователя с id = {}", isPositive ? "лайк" : "дизлайк",
+                reviewId, userId);
 
-    @Override
-    public void deleteDislikeFromReview(int reviewId, int userId) {
-        log.info("Получен запрос на удаление дизлайка у отзыва с id = {} от пользователя с id = {}", reviewId, userId);
+        int usefulDelta = isPositive ? -1 : 1;
 
-        getReviewById(reviewId);
-        User user = userStorage.getUserById(userId);
+        jdbcTemplate.update("UPDATE reviews SET useful = useful + ? WHERE review_id = ?", usefulDelta, reviewId);
 
-        jdbcTemplate.update("DELETE FROM review_like WHERE review_id = ? AND user_id = ? AND is_positive = false",
-                reviewId, userId);
+        log.info("Полезность отзыва с id = {} изменилась на {}", reviewId, usefulDelta);
 
-        log.info("Успешно удален дизлайк у отзыва с id = {} от пользователя с id = {}", reviewId, user.getId());
+        return usefulDelta;
+    }
 
-        jdbcTemplate.update("UPDATE reviews SET useful = useful + 1 WHERE review_id = ?", reviewId);
+    private void lockReview(int reviewId) {
+        List<Integer> locked = jdbcTemplate.queryForList("SELECT review_id FROM reviews WHERE review_id = ? " +
+                "FOR UPDATE", Integer.class, reviewId);
 
-        log.info("Успешно увеличилась полезность на 1 единицу у отзыва с id = {}", reviewId);
+        if (locked.isEmpty()) {
+            throw new NoSuchElementException(String.format("Отзыв с id = %s отсутствует", reviewId));
+        }
     }
 
     private Review makeReview(ResultSet rs) throws SQLException {
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.storage.dao.film.stats;
+
+import lombok.Getter;
+
+@Getter
+public class FilmScoreDelta {
+    private int countDelta;
+    private long sumDelta;
+
+    public void add(int countDelta, int sumDelta) {
+        this.countDelta += countDelta;
+        this.sumDelta += sumDelta;
+    }
+}
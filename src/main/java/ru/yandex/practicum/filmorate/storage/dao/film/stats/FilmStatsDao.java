@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate.storage.dao.film.stats;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.storage.dao.BatchUtils;
+import ru.yandex.practicum.filmorate.storage.dao.MutationLocks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FilmStatsDao implements FilmStatsStorage {
+    private static final String UPDATE_RANKING_SQL = "UPDATE films SET ranking = (" +
+            "SELECT CASE WHEN st.score_count = 0 THEN 0 ELSE CAST(st.score_sum AS DOUBLE) / st.score_count END " +
+            "FROM film_stats AS st WHERE st.film_id = films.film_id) " +
+            "WHERE film_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MutationLocks mutationLocks;
+
+    @Override
+    public void createFilmStats(int filmId) {
+        jdbcTemplate.update("INSERT INTO film_stats (film_id, score_count, score_sum) VALUES (?, 0, 0)", filmId);
+    }
+
+    @Override
+    public void lockFilmStats(int filmId) {
+        List<Integer> lockedRows = jdbcTemplate.queryForList("SELECT film_id FROM film_stats WHERE film_id = ? " +
+                "FOR UPDATE", Integer.class, filmId);
+
+        if (lockedRows.isEmpty()) {
+            String errorMessage = String.format("Статистика оценок фильма с id = %s не найдена", filmId);
+
+            log.error(errorMessage);
+
+            throw new NoSuchElementException(errorMessage);
+        }
+    }
+
+    @Override
+    public void lockFilmStats(Collection<Integer> filmIds) {
+        List<Integer> sortedIds = filmIds.stream().distinct().sorted().collect(Collectors.toList());
+
+        for (List<Integer> batch : BatchUtils.partition(sortedIds)) {
+            List<Integer> lockedRows = namedParameterJdbcTemplate.queryForList("SELECT film_id FROM film_stats " +
+                    "WHERE film_id IN (:ids) ORDER BY film_id FOR UPDATE", Map.of("ids", batch), Integer.class);
+
+            if (lockedRows.size() != batch.size()) {
+                String errorMessage = String.format("Статистика оценок найдена не для всех фильмов из %s", batch);
+
+                log.error(errorMessage);
+
+                throw new NoSuchElementException(errorMessage);
+            }
+        }
+    }
+
+    @Override
+    public void applyScoreDelta(int filmId, int countDelta, int sumDelta) {
+        jdbcTemplate.update("UPDATE film_stats SET score_count = score_count + ?, score_sum = score_sum + ? " +
+                "WHERE film_id = ?", countDelta, sumDelta, filmId);
+        jdbcTemplate.update(UPDATE_RANKING_SQL, filmId);
+    }
+
+    @Override
+    public void applyScoreDeltas(Map<Integer, FilmScoreDelta> deltasByFilmId) {
+        if (deltasByFilmId.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> statsArgs = new ArrayList<>(deltasByFilmId.size());
+        List<Object[]> rankingArgs = new ArrayList<>(deltasByFilmId.size());
+
+        deltasByFilmId.forEach((filmId, delta) -> {
+            statsArgs.add(new Object[]{delta.getCountDelta(), delta.getSumDelta(), filmId});
+            rankingArgs.add(new Object[]{filmId});
+        });
+
+        jdbcTemplate.batchUpdate("UPDATE film_stats SET score_count = score_count + ?, score_sum = score_sum + ? " +
+                "WHERE film_id = ?", statsArgs);
+        jdbcTemplate.batchUpdate(UPDATE_RANKING_SQL, rankingArgs);
+    }
+
+    @Override
+    public void removeScores(Map<Integer, Integer> scoresByFilmId) {
+        if (scoresByFilmId.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> statsArgs = new ArrayList<>(scoresByFilmId.size());
+        List<Object[]> rankingArgs = new ArrayList<>(scoresByFilmId.size());
+
+        scoresByFilmId.forEach((filmId, score) -> {
+            statsArgs.add(new Object[]{score, filmId});
+            rankingArgs.add(new Object[]{filmId});
+        });
+
+        jdbcTemplate.batchUpdate("UPDATE film_stats SET score_count = score_count - 1, score_sum = score_sum - ? " +
+                "WHERE film_id = ?", statsArgs);
+        jdbcTemplate.batchUpdate(UPDATE_RANKING_SQL, rankingArgs);
+    }
+
+    @Override
+    public List<Integer> reconcileFilmStats() {
+        log.info("Получен запрос на сверку статистики оценок фильмов");
+
+        jdbcTemplate.update("INSERT INTO film_stats (film_id, score_count, score_sum) " +
+                "SELECT f.film_id, 0, 0 FROM films AS f " +
+                "WHERE NOT EXISTS (SELECT 1 FROM film_stats AS st WHERE st.film_id = f.film_id)");
+
+        List<Integer> suspectedFilmIds = jdbcTemplate.queryForList("SELECT st.film_id\n" +
+                "FROM film_stats AS st\n" +
+                "LEFT JOIN film_score AS fs ON st.film_id = fs.film_id\n" +
+                "GROUP BY st.film_id, st.score_count, st.score_sum\n" +
+                "HAVING st.score_count <> COUNT(fs.user_id) OR st.score_sum <> COALESCE(SUM(fs.score), 0)",
+                Integer.class);
+
+        List<Integer> correctedFilmIds = suspectedFilmIds.isEmpty() ? List.of() :
+                mutationLocks.filmScores().withLocks(suspectedFilmIds, () ->
+                        transactionTemplate.execute(status -> correctFilmStats(suspectedFilmIds)));
+
+        log.info("Сверка статистики оценок завершена, исправлено фильмов = {}", correctedFilmIds.size());
+
+        return correctedFilmIds;
+    }
+
+    private List<Integer> correctFilmStats(List<Integer> filmIds) {
+        List<Object[]> corrections = new ArrayList<>();
+        List<Integer> correctedFilmIds = new ArrayList<>();
+
+        for (List<Integer> batch : BatchUtils.partition(filmIds.stream().sorted().collect(Collectors.toList()))) {
+            namedParameterJdbcTemplate.queryForList("SELECT film_id FROM film_stats WHERE film_id IN (:ids) " +
+                    "ORDER BY film_id FOR UPDATE", Map.of("ids", batch), Integer.class);
+            namedParameterJdbcTemplate.query("SELECT st.film_id, st.score_count, st.score_sum, " +
+                    "COUNT(fs.user_id) AS actual_count, COALESCE(SUM(fs.score), 0) AS actual_sum\n" +
+                    "FROM film_stats AS st\n" +
+                    "LEFT JOIN film_score AS fs ON st.film_id = fs.film_id\n" +
+                    "WHERE st.film_id IN (:ids)\n" +
+                    "GROUP BY st.film_id, st.score_count, st.score_sum\n" +
+                    "HAVING st.score_count <> COUNT(fs.user_id) OR st.score_sum <> COALESCE(SUM(fs.score), 0)",
+                    Map.of("ids", batch), rs -> {
+                        int filmId = rs.getInt("film_id");
+
+                        log.warn("Статистика оценок фильма с id = {} расходится с оценками: count {} -> {}, " +
+                                        "sum {} -> {}", filmId, rs.getLong("score_count"), rs.getLong("actual_count"),
+                                rs.getLong("score_sum"), rs.getLong("actual_sum"));
+
+                        corrections.add(new Object[]{rs.getLong("actual_count"), rs.getLong("actual_sum"), filmId});
+                        correctedFilmIds.add(filmId);
+                    });
+        }
+
+        if (!corrections.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE film_stats SET score_count = ?, score_sum = ? WHERE film_id = ?",
+                    corrections);
+            jdbcTemplate.batchUpdate(UPDATE_RANKING_SQL, correctedFilmIds.stream()
+                    .map(filmId -> new Object[]{filmId})
+                    .collect(Collectors.toList()));
+        }
+
+        return correctedFilmIds;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.storage.dao.film.stats;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface FilmStatsStorage {
+    void createFilmStats(int filmId);
+
+    void lockFilmStats(int filmId);
+
+    void lockFilmStats(Collection<Integer> filmIds);
+
+    void applyScoreDelta(int filmId, int countDelta, int sumDelta);
+
+    void applyScoreDeltas(Map<Integer, FilmScoreDelta> deltasByFilmId);
+
+    void removeScores(Map<Integer, Integer> scoresByFilmId);
+
+    List<Integer> reconcileFilmStats();
+}
@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.storage.dao.user;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FriendshipStatus;
+import ru.yandex.practicum.filmorate.storage.dao.SortedIntArrays;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FriendGraph {
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentMap<Integer, int[]> friends = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, int[]> followers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        log.info("Получен запрос на построение графа друзей");
+
+        EdgeCollector edges = new EdgeCollector();
+
+        jdbcTemplate.query("SELECT sender_id, recipients_id FROM user_friend WHERE friendship_status = ?",
+                rs -> {
+                    edges.add(rs.getInt("sender_id"), rs.getInt("recipients_id"));
+                }, FriendshipStatus.FRIENDS.toString());
+
+        Map<Integer, int[]> loadedFriends = edges.group(false);
+        Map<Integer, int[]> loadedFollowers = edges.group(true);
+
+        friends.clear();
+        friends.putAll(loadedFriends);
+        followers.clear();
+        followers.putAll(loadedFollowers);
+
+        log.info("Граф друзей построен, пользователей с друзьями = {}, связей = {}", loadedFriends.size(),
+                edges.size);
+    }
+
+    public int[] getFriends(int userId) {
+        return friends.getOrDefault(userId, SortedIntArrays.EMPTY).clone();
+    }
+
+    public int[] getFollowers(int userId) {
+        return followers.getOrDefault(userId, SortedIntArrays.EMPTY).clone();
+    }
+
+    public int[] sampleFriends(int userId, int limit) {
+        int[] ids = friends.getOrDefault(userId, SortedIntArrays.EMPTY);
+
+        if (ids.length <= limit) {
+            return ids.clone();
+        }
+
+        int[] sample = new int[limit];
+        double step = (double) ids.length / limit;
+        int offset = Math.floorMod(userId, ids.length);
+
+        for (int i = 0; i < limit; i++) {
+            sample[i] = ids[(offset + (int) (i * step)) % ids.length];
+        }
+
+        return sample;
+    }
+
+    public int getFollowersCount(int userId) {
+        return followers.getOrDefault(userId, SortedIntArrays.EMPTY).length;
+    }
+
+    public int[] getCommonFriends(int userId, int otherId) {
+        return SortedIntArrays.intersect(friends.getOrDefault(userId, SortedIntArrays.EMPTY),
+                friends.getOrDefault(otherId, SortedIntArrays.EMPTY));
+    }
+
+    public void addFriend(int userId, int friendId) {
+        friends.compute(userId, (id, ids) -> SortedIntArrays.insert(ids == null ? SortedIntArrays.EMPTY : ids,
+                friendId));
+        followers.compute(friendId, (id, ids) -> SortedIntArrays.insert(ids == null ? SortedIntArrays.EMPTY : ids,
+                userId));
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        friends.computeIfPresent(userId, (id, ids) -> SortedIntArrays.remove(ids, friendId));
+        followers.computeIfPresent(friendId, (id, ids) -> SortedIntArrays.remove(ids, userId));
+    }
+
+    public void removeUser(int userId) {
+        int[] userFriends = friends.remove(userId);
+        int[] userFollowers = followers.remove(userId);
+
+        if (userFriends != null) {
+            for (int friendId : userFriends) {
+                followers.computeIfPresent(friendId, (id, ids) -> SortedIntArrays.remove(ids, userId));
+            }
+        }
+
+        if (userFollowers != null) {
+            for (int followerId : userFollowers) {
+                friends.computeIfPresent(followerId, (id, ids) -> SortedIntArrays.remove(ids, userId));
+            }
+        }
+    }
+
+    private static class EdgeCollector {
+        private long[] edges = new long[64];
+        private int size;
+
+        private void add(int senderId, int recipientId) {
+            if (size == edges.length) {
+                edges = Arrays.copyOf(edges, size * 2);
+            }
+
+            edges[size++] = pack(senderId, recipientId);
+        }
+
+        private Map<Integer, int[]> group(boolean byRecipient) {
+            long[] sorted = new long[size];
+
+            for (int i = 0; i < size; i++) {
+                sorted[i] = byRecipient ? pack(second(edges[i]), first(edges[i])) : edges[i];
+            }
+
+            Arrays.sort(sorted);
+
+            Map<Integer, int[]> grouped = new HashMap<>();
+            int from = 0;
+
+            for (int i = 1; i <= size; i++) {
+                if (i == size || first(sorted[i]) != first(sorted[from])) {
+                    int[] adjacent = new int[i - from];
+
+                    for (int j = from; j < i; j++) {
+                        adjacent[j - from] = second(sorted[j]);
+                    }
+
+                    grouped.put(first(sorted[from]), adjacent);
+                    from = i;
+                }
+            }
+
+            return grouped;
+        }
+
+        private static long pack(int first, int second) {
+            return ((long) first << 32) | (second & 0xFFFFFFFFL);
+        }
+
+        private static int first(long edge) {
+            return (int) (edge >> 32);
+        }
+
+        private static int second(long edge) {
+            return (int) edge;
+        }
+    }
+}
@@ -3,12 +3,22 @@ package ru.yandex.practicum.filmorate.storage.dao.user;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.event.FilmEventPublisher;
+import ru.yandex.practicum.filmorate.event.FilmScoreChangedEvent;
 import ru.yandex.practicum.filmorate.model.FriendshipStatus;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.UserEvent;
+import ru.yandex.practicum.filmorate.storage.dao.BatchUtils;
+import ru.yandex.practicum.filmorate.storage.dao.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.storage.dao.MutationLocks;
+import ru.yandex.practicum.filmorate.storage.dao.PageCursor;
+import ru.yandex.practicum.filmorate.storage.dao.film.stats.FilmStatsStorage;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -20,13 +30,32 @@ import static ru.yandex.practicum.filmorate.service.UserEventFactory.getDeleteFr
 @Component
 @Slf4j
 public class UserDao implements UserStorage {
+    public static final int GOOD_SCORE = 6;
+
     private final Calendar tzUTC = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
     private final JdbcTemplate jdbcTemplate;
-    private final int GOOD_SCORE = 6;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final FilmEventPublisher eventPublisher;
+    private final FilmStatsStorage filmStatsStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final LiveIdRegistry liveIds;
+    private final FriendGraph friendGraph;
+    private final MutationLocks mutationLocks;
 
     @Autowired
-    public UserDao(JdbcTemplate jdbcTemplate) {
+    public UserDao(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                   FilmEventPublisher eventPublisher, FilmStatsStorage filmStatsStorage,
+                   TransactionTemplate transactionTemplate, LiveIdRegistry liveIds, FriendGraph friendGraph,
+                   MutationLocks mutationLocks) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.filmStatsStorage = filmStatsStorage;
+        this.transactionTemplate = transactionTemplate;
+        this.liveIds = liveIds;
+        this.friendGraph = friendGraph;
+        this.mutationLocks = mutationLocks;
     }
 
     @Override
@@ -41,6 +70,27 @@ public class UserDao implements UserStorage {
         return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs));
     }
 
+    @Override
+    public Page<User> getUsersPage(String cursor, int limit) {
+        int afterId = PageCursor.decode(cursor);
+
+        log.info("Получен запрос на отправку {} пользователей после пользователя с id = {}", limit, afterId);
+
+        List<User> users = jdbcTemplate.query("SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?",
+                (rs, rowNum) -> makeUser(rs), afterId, limit + 1);
+
+        String next = null;
+
+        if (users.size() > limit) {
+            users = users.subList(0, limit);
+            next = PageCursor.encode(users.get(limit - 1).getId());
+        }
+
+        log.info("Страница из {} пользователей успешно отправлена", users.size());
+
+        return new Page<>(users, next);
+    }
+
     private User makeUser(ResultSet rs) throws SQLException {
         return new User(
                 rs.getInt("user_id"),
@@ -97,6 +147,8 @@ public class UserDao implements UserStorage {
 
         log.info("Пользователь c id = {} успешно создан", user.getId());
 
+        liveIds.users().add(generatedId.intValue());
+
         return getUserById(generatedId.intValue());
     }
 
@@ -105,7 +157,7 @@ public class UserDao implements UserStorage {
         String name;
         log.info("Получен запрос на обновление пользователя");
 
-        getUserById(user.getId());
+        liveIds.users().require(user.getId());
 
         if (user.getName() == null || user.getName().isBlank()) {
             name = user.getLogin();
@@ -127,8 +179,50 @@ public class UserDao implements UserStorage {
         log.info(String.format("Получен запрос на удаление пользователя с id = %s", id));
 
         User deletedUser = getUserById(id);
+        Map<Integer, Integer> userScores = new HashMap<>();
+        List<Integer> userReviewIds = new ArrayList<>();
+
+        boolean deleted = false;
+
+        while (!deleted) {
+            List<Integer> scoredFilmIds = jdbcTemplate.queryForList("SELECT film_id FROM film_score WHERE user_id = ?",
+                    Integer.class, id);
+
+            deleted = mutationLocks.filmScores().withLocks(scoredFilmIds, () -> {
+                boolean committed = transactionTemplate.execute(status -> {
+                    userScores.clear();
+                    jdbcTemplate.query("SELECT film_id, score FROM film_score WHERE user_id = ? FOR UPDATE",
+                            rs -> {
+                                userScores.put(rs.getInt("film_id"), rs.getInt("score"));
+                            }, id);
 
-        jdbcTemplate.update("DELETE FROM users WHERE user_id = ?", id);
+                    if (!scoredFilmIds.containsAll(userScores.keySet())) {
+                        log.info("Оценки пользователя с id = {} изменились во время удаления, повторяем", id);
+
+                        return false;
+                    }
+
+                    filmStatsStorage.lockFilmStats(userScores.keySet());
+                    userReviewIds.addAll(jdbcTemplate.queryForList("SELECT review_id FROM reviews " +
+                            "WHERE user_id = ?", Integer.class, id));
+                    filmStatsStorage.removeScores(userScores);
+                    jdbcTemplate.update("DELETE FROM users WHERE user_id = ?", id);
+
+                    return true;
+                });
+
+                if (committed) {
+                    userScores.forEach((filmId, score) -> eventPublisher.publish(
+                            new FilmScoreChangedEvent(filmId, id, score, FilmScoreChangedEvent.NO_SCORE)));
+                }
+
+                return committed;
+            });
+        }
+
+        liveIds.users().remove(id);
+        liveIds.reviews().removeAll(userReviewIds);
+        friendGraph.removeUser(id);
 
         log.info("Пользователь с id = {} был успешно удален", deletedUser.getId());
 
@@ -140,18 +234,20 @@ public class UserDao implements UserStorage {
         log.info("Получен запрос на добавление в друзья. Пользователь с id = {} хочет добавить пользователя с id = {}",
                 userId, friendId);
 
-        User user = getUserById(userId);
-        User friend = getUserById(friendId);
+        liveIds.users().require(userId);
+        liveIds.users().require(friendId);
 
         jdbcTemplate.update("INSERT INTO user_friend (sender_id, recipients_id, friendship_status) VALUES (?, ?, ?)",
-                user.getId(), friend.getId(), FriendshipStatus.FRIENDS.toString());
+                userId, friendId, FriendshipStatus.FRIENDS.toString());
 
         jdbcTemplate.update("INSERT INTO user_friend (sender_id, recipients_id, friendship_status) VALUES (?, ?, ?)",
-                friend.getId(), user.getId(), FriendshipStatus.IN_SUBSCRIBERS.toString());
+                friendId, userId, FriendshipStatus.IN_SUBSCRIBERS.toString());
+
+        friendGraph.addFriend(userId, friendId);
 
-        log.info(String.format("%s попал в список друзей пользователя %s", user.getName(), friend.getName()));
+        log.info("Пользователь с id = {} попал в список друзей пользователя с id = {}", friendId, userId);
 
-        log.info(String.format("%s попал в список подписчиков пользователя %s", friend.getName(), user.getName()));
+        log.info("Пользователь с id = {} попал в список подписчиков пользователя с id = {}", userId, friendId);
 
         registerUserEvent(getAddFriendEvent(userId, friendId));
     }
@@ -161,10 +257,11 @@ public class UserDao implements UserStorage {
         log.info("Получен запрос на удаление из друзей. Пользователь с id = {} хочет удалить друга с id = {}", userId,
                 friendId);
 
-        getUserById(userId);
-        getUserById(friendId);
+        liveIds.users().require(userId);
+        liveIds.users().require(friendId);
 
         jdbcTemplate.update("DELETE FROM user_friend WHERE sender_id = ? AND recipients_id = ?", userId, friendId);
+        friendGraph.removeFriend(userId, friendId);
 
         log.info("Пользователи c id = {} и с id = {} больше не друзья", userId, friendId);
 
@@ -175,42 +272,68 @@ public class UserDao implements UserStorage {
     public List<User> getUsersFriends(int userId) {
         log.info("Получен запрос на отправку друзей пользователя с id = {}", userId);
 
-        getUserById(userId);
+        liveIds.users().require(userId);
 
-        log.info("Пользователю с id = {} успешно отправлены его друзья", userId);
+        List<User> friends = getUsersByIds(toList(friendGraph.getFriends(userId)));
 
-        String sql = "SELECT *\n" +
-                "FROM users AS u\n" +
-                "JOIN user_friend AS uf ON u.user_id = uf.recipients_id\n" +
-                "WHERE sender_id = ?\n" +
-                "  AND friendship_status = 'FRIENDS'";
+        log.info("Пользователю с id = {} успешно отправлены его друзья", userId);
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), userId);
+        return friends;
     }
 
     @Override
     public List<User> getCommonFriends(int userId, int otherId) {
         log.info("Получен запрос на отправку общих друзей пользователей с id = {} и с id = {} ", userId, otherId);
 
-        User user = getUserById(userId);
-        User otherUser = getUserById(otherId);
+        liveIds.users().require(userId);
+        liveIds.users().require(otherId);
 
-        String sql = "SELECT u.*\n" +
-                "FROM users AS u\n" +
-                "JOIN user_friend AS uf ON u.user_id = uf.recipients_id\n" +
-                "WHERE uf.sender_id IN (?, ?)\n" +
-                "GROUP BY uf.recipients_id\n" +
-                "HAVING COUNT(uf.sender_id) > 1";
+        List<User> commonFriends = getUsersByIds(toList(friendGraph.getCommonFriends(userId, otherId)));
 
-        log.info("Список общих друзей пользователей с id = {} и с id = {} успешно отправлен", user.getId(),
-                otherUser.getId());
+        log.info("Список общих друзей пользователей с id = {} и с id = {} успешно отправлен", userId, otherId);
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), userId, otherId);
+        return commonFriends;
+    }
+
+    @Override
+    public List<User> getUsersByIds(Collection<Integer> ids) {
+        Map<Integer, User> usersById = new HashMap<>();
+
+        for (List<Integer> batch : BatchUtils.partition(ids)) {
+            namedParameterJdbcTemplate.query("SELECT * FROM users WHERE user_id IN (:ids)", Map.of("ids", batch),
+                    rs -> {
+                        User user = makeUser(rs);
+
+                        usersById.put(user.getId(), user);
+                    });
+        }
+
+        List<User> users = new ArrayList<>(usersById.size());
+
+        for (Integer id : ids) {
+            User user = usersById.get(id);
+
+            if (user != null) {
+                users.add(user);
+            }
+        }
+
+        return users;
+    }
+
+    private static List<Integer> toList(int[] ids) {
+        List<Integer> list = new ArrayList<>(ids.length);
+
+        for (int id : ids) {
+            list.add(id);
+        }
+
+        return list;
     }
 
     @Override
     public List<UserEvent> getUserFeed(int userId) {
-        getUserById(userId);
+        liveIds.users().require(userId);
 
         log.info("Получение ленты событий для пользователя с id = {}", userId);
 
@@ -237,6 +360,27 @@ public class UserDao implements UserStorage {
         log.info("Событие записано");
     }
 
+    @Override
+    public void registerUserEvents(List<UserEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        String sqlQuery = "INSERT INTO user_events (user_id, event_type, operation, affected_entity_id) " +
+                "VALUES (?, ?, ?, ?)";
+
+        List<Object[]> batchArgs = new ArrayList<>(events.size());
+
+        for (UserEvent event : events) {
+            batchArgs.add(new Object[]{event.getUserId(), event.getEventType().toString(),
+                    event.getOperation().toString(), event.getEntityId()});
+        }
+
+        jdbcTemplate.batchUpdate(sqlQuery, batchArgs);
+
+        log.info("Записано событий: {}", events.size());
+    }
+
     private UserEvent mapUserEvent(ResultSet rs) throws SQLException {
         return new UserEvent(rs.getInt("event_id"),
                 rs.getInt("user_id"),
@@ -254,23 +398,4 @@ public class UserDao implements UserStorage {
 
         return jdbcTemplate.queryForList(sql, Integer.class, userId, GOOD_SCORE);
     }
-
-    @Override
-    public Map<Integer, Integer> getScoreVectorByUserId(Integer userId) {
-        log.info("Получен запрос на вектор оценок пользователя с id = {}", userId);
-
-        String sql = "SELECT films.film_id, COALESCE(fs.score, 0) AS score " +
-                "FROM films " +
-                "LEFT JOIN film_score AS fs ON films.film_id = fs.film_id AND fs.user_id = ?";
-
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, userId);
-
-        Map<Integer, Integer> usersMap = new HashMap<>();
-        for (Map<String, Object> row : rows) {
-            Integer id = (Integer) row.get("film_id");
-            Integer score = (Integer) row.get("score");
-            usersMap.put(id, score);
-        }
-        return usersMap;
-    }
 }
\ No newline at end of file
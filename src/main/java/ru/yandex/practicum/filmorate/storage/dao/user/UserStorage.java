@@ -1,14 +1,17 @@
 package ru.yandex.practicum.filmorate.storage.dao.user;
 
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.UserEvent;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 public interface UserStorage {
     List<User> getUsers();
 
+    Page<User> getUsersPage(String cursor, int limit);
+
     User getUserById(int id);
 
     User createNewUser(User user);
@@ -25,11 +28,13 @@ public interface UserStorage {
 
     List<User> getCommonFriends(int userId, int otherId);
 
+    List<User> getUsersByIds(Collection<Integer> ids);
+
     List<UserEvent> getUserFeed(int userId);
 
     void registerUserEvent(UserEvent event);
 
-    List<Integer> getLikedFilmsId(Integer userId);
+    void registerUserEvents(List<UserEvent> events);
 
-    Map<Integer, Integer> getScoreVectorByUserId(Integer userId);
+    List<Integer> getLikedFilmsId(Integer userId);
 }
\ No newline at end of file
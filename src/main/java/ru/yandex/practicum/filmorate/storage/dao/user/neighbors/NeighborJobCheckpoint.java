@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.storage.dao.user.neighbors;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class NeighborJobCheckpoint {
+    private final int lastUserId;
+    private final long processed;
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.storage.dao.user.neighbors;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Neighbour;
+import ru.yandex.practicum.filmorate.storage.dao.BatchUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class UserNeighborsDao implements UserNeighborsStorage {
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void replaceNeighbours(Map<Integer, List<Neighbour>> neighboursByUserId) {
+        if (neighboursByUserId.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> userIds = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+
+        neighboursByUserId.forEach((userId, neighbours) -> {
+            userIds.add(new Object[]{userId});
+            neighbours.forEach(neighbour -> rows.add(new Object[]{userId, neighbour.getUserId(),
+                    neighbour.getSimilarity()}));
+        });
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("DELETE FROM user_neighbors WHERE user_id = ?", userIds);
+            jdbcTemplate.batchUpdate("INSERT INTO user_neighbors (user_id, neighbor_id, similarity) VALUES (?, ?, ?)",
+                    rows);
+            jdbcTemplate.batchUpdate("MERGE INTO user_neighbor_refresh (user_id, refreshed_at) KEY (user_id) " +
+                    "VALUES (?, NOW())", userIds);
+        });
+
+        log.info("Обновлены соседи {} пользователей", neighboursByUserId.size());
+    }
+
+    @Override
+    public List<Neighbour> getNeighbours(int userId, int limit) {
+        return jdbcTemplate.query("SELECT neighbor_id, similarity FROM user_neighbors WHERE user_id = ? " +
+                        "ORDER BY similarity DESC, neighbor_id LIMIT ?",
+                (rs, rowNum) -> new Neighbour(rs.getInt("neighbor_id"), rs.getDouble("similarity")), userId, limit);
+    }
+
+    @Override
+    public boolean isRefreshed(int userId) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_neighbor_refresh WHERE user_id = ?",
+                Integer.class, userId);
+
+        return count != null && count > 0;
+    }
+
+    @Override
+    public List<Integer> getUsersWithNeighbours(Collection<Integer> neighbourIds) {
+        List<Integer> userIds = new ArrayList<>();
+
+        for (List<Integer> batch : BatchUtils.partition(neighbourIds)) {
+            userIds.addAll(namedParameterJdbcTemplate.queryForList("SELECT DISTINCT user_id FROM user_neighbors " +
+                    "WHERE neighbor_id IN (:ids)", Map.of("ids", batch), Integer.class));
+        }
+
+        return userIds;
+    }
+
+    @Override
+    public List<Integer> getUserIdsAfter(int afterUserId, int limit) {
+        return jdbcTemplate.queryForList("SELECT user_id FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?",
+                Integer.class, afterUserId, limit);
+    }
+
+    @Override
+    public long countUsers() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public NeighborJobCheckpoint getCheckpoint(String jobName) {
+        List<NeighborJobCheckpoint> checkpoints = jdbcTemplate.query("SELECT last_user_id, processed " +
+                        "FROM neighbor_job_checkpoint WHERE job_name = ?",
+                (rs, rowNum) -> new NeighborJobCheckpoint(rs.getInt("last_user_id"), rs.getLong("processed")),
+                jobName);
+
+        return checkpoints.isEmpty() ? null : checkpoints.get(0);
+    }
+
+    @Override
+    public void saveCheckpoint(String jobName, int lastUserId, long processed) {
+        jdbcTemplate.update("MERGE INTO neighbor_job_checkpoint (job_name, last_user_id, processed) KEY (job_name) " +
+                "VALUES (?, ?, ?)", jobName, lastUserId, processed);
+    }
+
+    @Override
+    public void deleteCheckpoint(String jobName) {
+        jdbcTemplate.update("DELETE FROM neighbor_job_checkpoint WHERE job_name = ?", jobName);
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.storage.dao.user.neighbors;
+
+import ru.yandex.practicum.filmorate.model.Neighbour;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface UserNeighborsStorage {
+    void replaceNeighbours(Map<Integer, List<Neighbour>> neighboursByUserId);
+
+    List<Neighbour> getNeighbours(int userId, int limit);
+
+    boolean isRefreshed(int userId);
+
+    List<Integer> getUsersWithNeighbours(Collection<Integer> neighbourIds);
+
+    List<Integer> getUserIdsAfter(int afterUserId, int limit);
+
+    long countUsers();
+
+    NeighborJobCheckpoint getCheckpoint(String jobName);
+
+    void saveCheckpoint(String jobName, int lastUserId, long processed);
+
+    void deleteCheckpoint(String jobName);
+}
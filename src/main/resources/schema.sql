@@ -1,5 +1,6 @@
 DROP TABLE IF EXISTS
-    user_events, genres, ratings, user_friend, film_genre, film_score, reviews, director, film_director, review_like, users, films;
+    user_events, genres, ratings, user_friend, film_genre, film_score, film_stats, reviews, director, film_director, review_like,
+    user_neighbors, user_neighbor_refresh, neighbor_job_checkpoint, users, films;
 
 CREATE TABLE IF NOT EXISTS ratings
 (
@@ -49,6 +50,13 @@ CREATE TABLE IF NOT EXISTS film_score
     PRIMARY KEY (film_id, user_id)
 );
 
+CREATE TABLE IF NOT EXISTS film_stats
+(
+    film_id     INTEGER NOT NULL PRIMARY KEY REFERENCES films (film_id) ON DELETE CASCADE,
+    score_count BIGINT  NOT NULL CHECK (score_count >= 0),
+    score_sum   BIGINT  NOT NULL CHECK (score_sum >= 0)
+);
+
 CREATE TABLE IF NOT EXISTS film_genre
 (
     film_id  INTEGER NOT NULL REFERENCES films (film_id) ON DELETE CASCADE,
@@ -96,3 +104,26 @@ CREATE TABLE IF NOT EXISTS user_events
     affected_entity_id INTEGER    NOT NULL,
     CREATEd_at         TIMESTAMP  NOT NULL DEFAULT NOW()
 );
+
+CREATE TABLE IF NOT EXISTS user_neighbors
+(
+    user_id     INTEGER NOT NULL REFERENCES users (user_id) ON DELETE CASCADE,
+    neighbor_id INTEGER NOT NULL REFERENCES users (user_id) ON DELETE CASCADE,
+    similarity  DOUBLE  NOT NULL,
+    PRIMARY KEY (user_id, neighbor_id)
+);
+
+CREATE INDEX IF NOT EXISTS user_neighbors_neighbor_idx ON user_neighbors (neighbor_id);
+
+CREATE TABLE IF NOT EXISTS user_neighbor_refresh
+(
+    user_id      INTEGER   NOT NULL PRIMARY KEY REFERENCES users (user_id) ON DELETE CASCADE,
+    refreshed_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS neighbor_job_checkpoint
+(
+    job_name     VARCHAR(64) NOT NULL PRIMARY KEY,
+    last_user_id INTEGER     NOT NULL,
+    processed    BIGINT      NOT NULL
+);
@@ -0,0 +1,191 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReviewService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.dao.film.stats.FilmStatsStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ConcurrentMutationStressTest {
+    private static final int THREADS = 16;
+    private static final int USERS = 48;
+    private static final int ROUNDS = 10;
+
+    private final FilmService filmService;
+    private final UserService userService;
+    private final ReviewService reviewService;
+    private final FilmStatsStorage filmStatsStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void shouldKeepHotFilmStatsConsistentUnderConcurrentScoring() throws Exception {
+        Film film = createFilm();
+        List<User> users = createUsers();
+
+        hammer(users, userIndex -> {
+            int userId = users.get(userIndex).getId();
+
+            for (int round = 1; round <= ROUNDS; round++) {
+                filmService.addScoreToFilm(film.getId(), userId, (userIndex + round) % 10 + 1);
+            }
+
+            if (userIndex % 3 == 0) {
+                filmService.deleteScoreFromFilm(film.getId(), userId);
+            }
+        }, ROUNDS + 1);
+
+        long expectedCount = 0;
+        long expectedSum = 0;
+
+        for (int userIndex = 0; userIndex < USERS; userIndex++) {
+            if (userIndex % 3 != 0) {
+                expectedCount++;
+                expectedSum += (userIndex + ROUNDS) % 10 + 1;
+            }
+        }
+
+        assertEquals(List.of(expectedCount, expectedSum), jdbcTemplate.queryForObject("SELECT score_count, " +
+                        "score_sum FROM film_stats WHERE film_id = ?",
+                (rs, rowNum) -> List.of(rs.getLong("score_count"), rs.getLong("score_sum")), film.getId()));
+        assertEquals(expectedCount, filmService.getUsersWhoScoredTheFilmById(film.getId()).size());
+        assertTrue(filmStatsStorage.reconcileFilmStats().isEmpty());
+        assertEquals(film.getId(), filmService.getTopFilmsByScores(1, null, null).get(0).getId());
+    }
+
+    @Test
+    public void shouldKeepHotReviewUsefulConsistentUnderConcurrentVoting() throws Exception {
+        Film film = createFilm();
+        List<User> users = createUsers();
+        Review review = reviewService.createNewReview(new Review(null, "Content", true, users.get(0).getId(),
+                film.getId(), 0));
+
+        hammer(users, userIndex -> {
+            int userId = users.get(userIndex).getId();
+
+            for (int round = 0; round < ROUNDS; round++) {
+                if (round % 2 == 0) {
+                    reviewService.addLikeToReview(review.getReviewId(), userId);
+                    reviewService.deleteDislikeFromReview(review.getReviewId(), userId);
+                } else {
+                    reviewService.addDislikeToReview(review.getReviewId(), userId);
+                    reviewService.deleteLikeFromReview(review.getReviewId(), userId);
+                }
+            }
+
+            switch (userIndex % 3) {
+                case 0:
+                    reviewService.addLikeToReview(review.getReviewId(), userId);
+                    break;
+                case 1:
+                    reviewService.deleteDislikeFromReview(review.getReviewId(), userId);
+                    break;
+                default:
+                    break;
+            }
+        }, ROUNDS * 2 + 1);
+
+        int expectedUseful = 0;
+
+        for (int userIndex = 0; userIndex < USERS; userIndex++) {
+            if (userIndex % 3 == 0) {
+                expectedUseful++;
+            } else if (userIndex % 3 == 2) {
+                expectedUseful--;
+            }
+        }
+
+        Integer votesSum = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(CASE WHEN is_positive THEN 1 " +
+                "ELSE -1 END), 0) FROM review_like WHERE review_id = ?", Integer.class, review.getReviewId());
+
+        assertEquals(expectedUseful, votesSum);
+        assertEquals(expectedUseful, reviewService.getReviewById(review.getReviewId()).getUseful());
+    }
+
+    private void hammer(List<User> users, IntConsumer userWorkload, int operationsPerUser) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int userIndex = 0; userIndex < users.size(); userIndex++) {
+                int index = userIndex;
+
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    userWorkload.accept(index);
+
+                    return null;
+                }));
+            }
+
+            long startedAt = System.nanoTime();
+            start.countDown();
+
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+
+            long elapsedNanos = Math.max(System.nanoTime() - startedAt, 1);
+            int operations = users.size() * operationsPerUser;
+
+            log.info("Выполнено {} операций в {} потоках за {} мс, пропускная способность {} оп/с", operations,
+                    THREADS, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    operations * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Film createFilm() {
+        return filmService.createNewFilm(Film.builder()
+                .name("Hot")
+                .description("HotDescription")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(120)
+                .mpa(new Rating(1, "G"))
+                .build());
+    }
+
+    private List<User> createUsers() {
+        List<User> users = new ArrayList<>();
+
+        for (int i = 0; i < USERS; i++) {
+            users.add(userService.createNewUser(User.builder()
+                    .email("user" + i + "@gmail.com")
+                    .login("User" + i)
+                    .name("User" + i)
+                    .birthday(LocalDate.of(2000, 1, 1))
+                    .build()));
+        }
+
+        return users;
+    }
+}
@@ -0,0 +1,194 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.service.recommendation.MinHashIndex;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@SpringBootTest(properties = "filmorate.recommendations.lsh.enabled=true")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class MinHashQualityReportTest {
+    private static final int FIRST_SYNTHETIC_USER_ID = 1_000_000;
+    private static final int CLUSTERS = 20;
+    private static final int USERS_PER_CLUSTER = 50;
+    private static final int CLUSTER_FILMS = 30;
+    private static final int LIKED_FROM_CLUSTER = 25;
+    private static final int NOISE_FILMS = 3;
+    private static final int CATALOG_SIZE = 5000;
+    private static final int K = 10;
+
+    private final FilmService filmService;
+    private final UserService userService;
+    private final MinHashIndex minHashIndex;
+
+    @Test
+    public void signaturesShouldFollowLikedFilmChanges() {
+        int userid1 = createUser(1).getId();
+        int userid2 = createUser(2).getId();
+        int filmid1 = createFilm(1).getId();
+        int filmid2 = createFilm(2).getId();
+
+        filmService.addScoreToFilm(filmid1, userid1, 9);
+        filmService.addScoreToFilm(filmid2, userid1, 8);
+        filmService.addScoreToFilm(filmid1, userid2, 10);
+        filmService.addScoreToFilm(filmid2, userid2, 7);
+
+        assertArrayEquals(new int[]{userid2}, minHashIndex.findCandidates(userid1));
+        assertEquals(1.0, minHashIndex.estimateSimilarity(userid1, userid2));
+
+        filmService.addScoreToFilm(filmid2, userid2, 3);
+        minHashIndex.updateLikedFilms(FIRST_SYNTHETIC_USER_ID, new int[]{filmid1});
+
+        assertEquals(1.0, minHashIndex.estimateSimilarity(userid2, FIRST_SYNTHETIC_USER_ID));
+
+        filmService.deleteScoreFromFilm(filmid1, userid2);
+
+        assertFalse(minHashIndex.contains(userid2));
+        assertEquals(0, minHashIndex.findCandidates(userid2).length);
+    }
+
+    @Test
+    public void approximateNeighboursShouldRecallMostExactNeighbours() {
+        Random random = new Random(7);
+        int users = CLUSTERS * USERS_PER_CLUSTER;
+        int[][] likedFilms = new int[users][];
+
+        for (int user = 0; user < users; user++) {
+            int cluster = user / USERS_PER_CLUSTER;
+            int[] liked = new int[LIKED_FROM_CLUSTER + NOISE_FILMS];
+            int[] pool = new int[CLUSTER_FILMS];
+
+            for (int i = 0; i < CLUSTER_FILMS; i++) {
+                pool[i] = cluster * CLUSTER_FILMS + i + 1;
+            }
+
+            for (int i = 0; i < LIKED_FROM_CLUSTER; i++) {
+                int j = i + random.nextInt(CLUSTER_FILMS - i);
+                int film = pool[j];
+
+                pool[j] = pool[i];
+                liked[i] = film;
+            }
+
+            for (int i = 0; i < NOISE_FILMS; i++) {
+                liked[LIKED_FROM_CLUSTER + i] = CLUSTERS * CLUSTER_FILMS + 1 + random.nextInt(CATALOG_SIZE);
+            }
+
+            likedFilms[user] = Arrays.stream(liked).distinct().sorted().toArray();
+            minHashIndex.updateLikedFilms(FIRST_SYNTHETIC_USER_ID + user, likedFilms[user]);
+        }
+
+        long exactNanos = 0;
+        long approximateNanos = 0;
+        long candidatesTotal = 0;
+        int hits = 0;
+
+        for (int user = 0; user < users; user++) {
+            long startedAt = System.nanoTime();
+            double[] exact = new double[users];
+
+            for (int other = 0; other < users; other++) {
+                exact[other] = other == user ? -1 : jaccard(likedFilms[user], likedFilms[other]);
+            }
+
+            double threshold = kthLargest(exact, K);
+
+            exactNanos += System.nanoTime() - startedAt;
+            startedAt = System.nanoTime();
+
+            int[] candidates = minHashIndex.findCandidates(FIRST_SYNTHETIC_USER_ID + user);
+            double[] approximate = new double[candidates.length];
+
+            for (int i = 0; i < candidates.length; i++) {
+                approximate[i] = jaccard(likedFilms[user], likedFilms[candidates[i] - FIRST_SYNTHETIC_USER_ID]);
+            }
+
+            Arrays.sort(approximate);
+            approximateNanos += System.nanoTime() - startedAt;
+            candidatesTotal += candidates.length;
+
+            for (int i = approximate.length - 1; i >= Math.max(0, approximate.length - K); i--) {
+                if (approximate[i] >= threshold) {
+                    hits++;
+                }
+            }
+        }
+
+        double recall = (double) hits / ((long) users * K);
+        double candidateShare = (double) candidatesTotal / ((long) users * (users - 1));
+
+        log.info("Отчет MinHash: пользователей = {}, recall@{} = {}, доля кандидатов = {}, " +
+                        "точный поиск {} мс, приближенный поиск {} мс", users, K, String.format("%.3f", recall),
+                String.format("%.4f", candidateShare), TimeUnit.NANOSECONDS.toMillis(exactNanos),
+                TimeUnit.NANOSECONDS.toMillis(approximateNanos));
+
+        assertTrue(recall >= 0.9);
+        assertTrue(candidateShare < 0.2);
+    }
+
+    private static double jaccard(int[] first, int[] second) {
+        int common = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common++;
+                i++;
+                j++;
+            }
+        }
+
+        return (double) common / (first.length + second.length - common);
+    }
+
+    private static double kthLargest(double[] values, int k) {
+        double[] sorted = values.clone();
+
+        Arrays.sort(sorted);
+
+        return sorted[sorted.length - k];
+    }
+
+    private Film createFilm(int number) {
+        return filmService.createNewFilm(Film.builder()
+                .name("Film" + number)
+                .description("FilmDescription" + number)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(120)
+                .mpa(new Rating(1, "G"))
+                .build());
+    }
+
+    private User createUser(int number) {
+        return userService.createNewUser(User.builder()
+                .email("user" + number + "@gmail.com")
+                .login("User" + number)
+                .name("User" + number)
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+    }
+}
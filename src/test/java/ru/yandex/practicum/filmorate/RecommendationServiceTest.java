@@ -3,37 +3,74 @@ package ru.yandex.practicum.filmorate;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Neighbour;
 import ru.yandex.practicum.filmorate.model.Rating;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.service.recommendation.ItemBasedRecommendationService;
+import ru.yandex.practicum.filmorate.service.recommendation.ItemSimilarityIndex;
 import ru.yandex.practicum.filmorate.service.recommendation.RecommedationService;
-
+import ru.yandex.practicum.filmorate.service.recommendation.RecommendationCache;
+import ru.yandex.practicum.filmorate.service.recommendation.SimilarityCache;
+import ru.yandex.practicum.filmorate.service.recommendation.SimilarityScorer;
+import ru.yandex.practicum.filmorate.service.recommendation.UserNeighborsJob;
+import ru.yandex.practicum.filmorate.service.recommendation.mf.FactorModelTrainer;
+import ru.yandex.practicum.filmorate.service.recommendation.mf.MatrixFactorizationRecommendationService;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.film.FilmRatersIndex;
+import ru.yandex.practicum.filmorate.storage.dao.film.ScoreVector;
+import ru.yandex.practicum.filmorate.storage.dao.film.UserScoreMatrix;
+import ru.yandex.practicum.filmorate.storage.dao.user.neighbors.UserNeighborsStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class RecommendationServiceTest {
     private final Map<Integer, String> ratings = Map.of(1, "G", 2, "PG");
     private final Map<Integer, String> genres = Map.of(1, "Комедия", 2, "Драма");
     private final FilmService filmService;
     private final UserService userService;
     private final RecommedationService recommendationService;
+    private final UserScoreMatrix userScoreMatrix;
+    private final FilmRatersIndex filmRatersIndex;
+    private final SimilarityCache similarityCache;
+    private final SimilarityScorer similarityScorer;
+    private final UserNeighborsJob userNeighborsJob;
+    private final UserNeighborsStorage userNeighborsStorage;
+    private final ItemSimilarityIndex itemSimilarityIndex;
+    private final ItemBasedRecommendationService itemBasedRecommendationService;
+    private final MatrixFactorizationRecommendationService matrixFactorizationRecommendationService;
+    private final FactorModelTrainer factorModelTrainer;
+    private final FilmStorage filmStorage;
+    private final RecommendationCache recommendationCache;
 
     @BeforeEach
     public void createUsersAndFilms() {
@@ -166,4 +203,377 @@ public class RecommendationServiceTest {
         assertThrows(NoSuchElementException.class,
                 () -> recommendationService.getRecommendation(4));
     }
+
+    @Test
+    public void scoreMatrixShouldFollowScoreChangesAndSurviveCompactionAndRebuild() {
+        int filmid1 = filmService.getFilms().get(0).getId();
+        int filmid2 = filmService.getFilms().get(1).getId();
+        int filmid3 = filmService.getFilms().get(2).getId();
+
+        int userid1 = userService.getUsers().get(0).getId();
+        int userid2 = userService.getUsers().get(1).getId();
+
+        filmService.addScoreToFilm(filmid3, userid1, 4);
+        filmService.addScoreToFilm(filmid1, userid1, 10);
+        filmService.addScoreToFilm(filmid2, userid1, 5);
+        filmService.addScoreToFilm(filmid2, userid1, 6);
+        filmService.deleteScoreFromFilm(filmid3, userid1);
+        filmService.addScoreToFilm(filmid2, userid2, 10);
+
+        ScoreVector vector = userScoreMatrix.getScoreVector(userid1);
+
+        assertArrayEquals(new int[]{filmid1, filmid2}, vector.filmIds());
+        assertEquals(10, vector.scoreOf(filmid1));
+        assertEquals(6, vector.scoreOf(filmid2));
+        assertEquals(0, vector.scoreOf(filmid3));
+        assertEquals(60 / (Math.sqrt(136) * 10), userScoreMatrix.cosineSimilarity(userid1, userid2), 1e-9);
+
+        userScoreMatrix.compact();
+
+        assertArrayEquals(new int[]{filmid1, filmid2}, userScoreMatrix.getScoreVector(userid1).filmIds());
+        assertEquals(6, userScoreMatrix.getScoreVector(userid1).scoreOf(filmid2));
+        assertEquals(60 / (Math.sqrt(136) * 10), userScoreMatrix.cosineSimilarity(userid1, userid2), 1e-9);
+
+        filmService.addScoreToFilm(filmid3, userid2, 7);
+        userScoreMatrix.compact();
+        filmService.deleteScoreFromFilm(filmid3, userid2);
+
+        assertArrayEquals(new int[]{filmid2}, userScoreMatrix.getScoreVector(userid2).filmIds());
+
+        userScoreMatrix.rebuild();
+
+        assertArrayEquals(new int[]{filmid1, filmid2}, userScoreMatrix.getScoreVector(userid1).filmIds());
+        assertEquals(60 / (Math.sqrt(136) * 10), userScoreMatrix.cosineSimilarity(userid1, userid2), 1e-9);
+        assertTrue(userScoreMatrix.getScoreVector(userService.getUsers().get(2).getId()).isEmpty());
+    }
+
+    @Test
+    public void onlyUsersWhoScoredTheSameFilmsShouldBeCandidates() {
+        int filmid1 = filmService.getFilms().get(0).getId();
+        int filmid2 = filmService.getFilms().get(1).getId();
+        int filmid3 = filmService.getFilms().get(2).getId();
+
+        int userid1 = userService.getUsers().get(0).getId();
+        int userid2 = userService.getUsers().get(1).getId();
+        int userid3 = userService.getUsers().get(2).getId();
+
+        filmService.addScoreToFilm(filmid1, userid1, 8);
+        filmService.addScoreToFilm(filmid2, userid2, 9);
+        filmService.addScoreToFilm(filmid1, userid2, 7);
+        filmService.addScoreToFilm(filmid3, userid3, 10);
+
+        assertArrayEquals(new int[]{userid1, userid2}, filmRatersIndex.getRaters(filmid1));
+        assertArrayEquals(new int[]{userid2}, filmRatersIndex.findCandidates(userid1, new int[]{filmid1}));
+        assertArrayEquals(new int[]{userid1}, filmRatersIndex.findCandidates(userid2,
+                new int[]{filmid1, filmid2}));
+        assertArrayEquals(new int[0], filmRatersIndex.findCandidates(userid3, new int[]{filmid3}));
+
+        filmService.deleteScoreFromFilm(filmid1, userid1);
+
+        assertArrayEquals(new int[0], filmRatersIndex.findCandidates(userid2, new int[]{filmid1, filmid2}));
+        assertTrue(recommendationService.getRecommendation(userid2).isEmpty());
+    }
+
+    @Test
+    public void similarityShouldBeCachedSymmetricallyAndInvalidatedOnScoreChange() {
+        int filmid1 = filmService.getFilms().get(0).getId();
+        int filmid2 = filmService.getFilms().get(1).getId();
+
+        int userid1 = userService.getUsers().get(0).getId();
+        int userid2 = userService.getUsers().get(1).getId();
+
+        filmService.addScoreToFilm(filmid1, userid1, 10);
+        filmService.addScoreToFilm(filmid2, userid1, 6);
+        filmService.addScoreToFilm(filmid2, userid2, 10);
+
+        assertEquals(filmid1, recommendationService.getRecommendation(userid2).get(0).getId());
+        assertEquals(1, similarityCache.size());
+        assertEquals(userScoreMatrix.cosineSimilarity(userid1, userid2),
+                similarityCache.getSimilarity(userid1, userid2, () -> -1.0));
+
+        filmService.addScoreToFilm(filmid1, userid2, 10);
+
+        assertEquals(-1.0, similarityCache.getSimilarity(userid2, userid1, () -> -1.0));
+        assertEquals(-1.0, similarityCache.getSimilarity(userid1, userid2, () -> 0.5));
+
+        long versionBeforeRebuild = userScoreMatrix.getVersion(userid2);
+
+        userScoreMatrix.rebuild();
+
+        assertNotEquals(versionBeforeRebuild, userScoreMatrix.getVersion(userid2));
+        assertEquals(0.5, similarityCache.getSimilarity(userid1, userid2, () -> 0.5));
+    }
+
+    @Test
+    public void parallelNeighbourSearchShouldMatchSequentialTopK() {
+        List<Film> films = filmService.getFilms();
+        List<Integer> userIds = new ArrayList<>();
+
+        for (int i = 0; i < 40; i++) {
+            User user = userService.createNewUser(User.builder()
+                    .email("neighbour" + i + "@gmail.com")
+                    .login("Neighbour" + i)
+                    .name("Neighbour" + i)
+                    .birthday(LocalDate.of(2000, 1, 1))
+                    .build());
+
+            userIds.add(user.getId());
+
+            for (int j = 0; j < films.size(); j++) {
+                if ((i + j) % 4 != 0) {
+                    filmService.addScoreToFilm(films.get(j).getId(), user.getId(), (i * 7 + j * 3) % 10 + 1);
+                }
+            }
+        }
+
+        int userId = userIds.get(0);
+        int[] candidates = userIds.stream().skip(1).mapToInt(Integer::intValue).toArray();
+        SimilarityScorer parallelScorer = new SimilarityScorer(userScoreMatrix, similarityCache, 4, 1);
+
+        List<Neighbour> sequential = similarityScorer.findNearestNeighbours(userId, candidates, 10);
+        List<Neighbour> parallel = parallelScorer.findNearestNeighbours(userId, candidates, 10);
+
+        parallelScorer.shutdown();
+
+        assertEquals(10, sequential.size());
+        assertEquals(sequential.stream().map(Neighbour::getUserId).collect(Collectors.toList()),
+                parallel.stream().map(Neighbour::getUserId).collect(Collectors.toList()));
+
+        for (int i = 1; i < sequential.size(); i++) {
+            assertTrue(sequential.get(i - 1).getSimilarity() >= sequential.get(i).getSimilarity());
+        }
+
+        assertEquals(userScoreMatrix.cosineSimilarity(userId, sequential.get(0).getUserId()),
+                sequential.get(0).getSimilarity(), 1e-9);
+    }
+
+    @Test
+    public void neighboursJobShouldPersistTopNeighboursAndResumeFromCheckpoint() {
+        int filmid1 = filmService.getFilms().get(0).getId();
+        int filmid2 = filmService.getFilms().get(1).getId();
+
+        int userid1 = userService.getUsers().get(0).getId();
+        int userid2 = userService.getUsers().get(1).getId();
+        int userid3 = userService.getUsers().get(2).getId();
+
+        filmService.addScoreToFilm(filmid1, userid1, 10);
+        filmService.addScoreToFilm(filmid2, userid1, 6);
+        filmService.addScoreToFilm(filmid2, userid2, 10);
+        filmService.addScoreToFilm(filmid1, userid3, 9);
+
+        userNeighborsStorage.saveCheckpoint("full", userid1, 1);
+        userNeighborsJob.runFullPass();
+
+        assertFalse(userNeighborsStorage.isRefreshed(userid1));
+        assertTrue(userNeighborsStorage.isRefreshed(userid2));
+        assertTrue(userNeighborsStorage.isRefreshed(userid3));
+        assertNull(userNeighborsStorage.getCheckpoint("full"));
+        assertEquals(List.of(userid1), userNeighborsStorage.getNeighbours(userid2, 10).stream()
+                .map(Neighbour::getUserId)
+                .collect(Collectors.toList()));
+
+        userNeighborsJob.runFullPass();
+
+        List<Neighbour> neighbours = userNeighborsStorage.getNeighbours(userid1, 10);
+
+        assertEquals(List.of(userid3, userid2), neighbours.stream()
+                .map(Neighbour::getUserId)
+                .collect(Collectors.toList()));
+        assertEquals(userScoreMatrix.cosineSimilarity(userid1, userid3), neighbours.get(0).getSimilarity(), 1e-9);
+
+        filmService.addScoreToFilm(filmid2, userid3, 10);
+        userNeighborsJob.refreshDirty();
+
+        assertEquals(List.of(userid3, userid1), userNeighborsStorage.getNeighbours(userid2, 10).stream()
+                .map(Neighbour::getUserId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void itemBasedStrategyShouldRecommendNeighboursOfHighlyScoredFilms() {
+        int filmid1 = filmService.getFilms().get(0).getId();
+        int filmid2 = filmService.getFilms().get(1).getId();
+        int filmid3 = filmService.getFilms().get(2).getId();
+
+        int userid1 = userService.getUsers().get(0).getId();
+        int userid2 = userService.getUsers().get(1).getId();
+        int userid3 = userService.getUsers().get(2).getId();
+
+        filmService.addScoreToFilm(filmid1, userid1, 10);
+        filmService.addScoreToFilm(filmid2, userid1, 9);
+        filmService.addScoreToFilm(filmid3, userid1, 2);
+        filmService.addScoreToFilm(filmid1, userid2, 9);
+        filmService.addScoreToFilm(filmid2, userid2, 10);
+        filmService.addScoreToFilm(filmid3, userid2, 3);
+        filmService.addScoreToFilm(filmid1, userid3, 10);
+        filmService.addScoreToFilm(filmid3, userid3, 4);
+
+        itemSimilarityIndex.rebuild();
+
+        assertEquals(List.of(filmid2), itemBasedRecommendationService.getSimilarFilms(filmid1, 10).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+        assertTrue(itemBasedRecommendationService.getSimilarFilms(filmid3, 10).isEmpty());
+        assertEquals(List.of(filmid2), itemBasedRecommendationService.getRecommendations(userid3).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+        assertTrue(itemBasedRecommendationService.getRecommendations(userid1).isEmpty());
+        assertThrows(NoSuchElementException.class, () -> itemBasedRecommendationService.getSimilarFilms(9999, 10));
+    }
+
+    @Test
+    public void matrixFactorizationModelShouldBeServedFromMappedSnapshot(@TempDir Path snapshotDir)
+            throws IOException {
+        int filmid1 = filmService.getFilms().get(0).getId();
+        int filmid2 = filmService.getFilms().get(1).getId();
+        int filmid3 = filmService.getFilms().get(2).getId();
+
+        int userid1 = userService.getUsers().get(0).getId();
+        int userid2 = userService.getUsers().get(1).getId();
+        int userid3 = userService.getUsers().get(2).getId();
+
+        assertTrue(matrixFactorizationRecommendationService.getRecommendations(userid1).isEmpty());
+
+        filmService.addScoreToFilm(filmid1, userid1, 9);
+        filmService.addScoreToFilm(filmid2, userid1, 8);
+        filmService.addScoreToFilm(filmid1, userid2, 9);
+        filmService.addScoreToFilm(filmid2, userid2, 9);
+        filmService.addScoreToFilm(filmid3, userid2, 10);
+        filmService.addScoreToFilm(filmid3, userid3, 2);
+
+        Path snapshot = snapshotDir.resolve("mf-model.bin");
+
+        matrixFactorizationRecommendationService.trainAndPublish(snapshot);
+
+        float prediction = matrixFactorizationRecommendationService.predict(userid1, filmid3);
+
+        assertTrue(Files.exists(snapshot));
+        assertFalse(Float.isNaN(prediction));
+        assertEquals(List.of(filmid3), matrixFactorizationRecommendationService.getRecommendations(userid1).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+        assertEquals(2, matrixFactorizationRecommendationService.getRecommendations(userid3).size());
+        assertTrue(matrixFactorizationRecommendationService.getRecommendations(9999).isEmpty());
+
+        matrixFactorizationRecommendationService.load(snapshot);
+
+        assertEquals(prediction, matrixFactorizationRecommendationService.predict(userid1, filmid3));
+        assertTrue(matrixFactorizationRecommendationService.getRecommendations(userid2).isEmpty());
+    }
+
+    @Test
+    public void matrixFactorizationSnapshotShouldBeDiscardedOnRestartWithDifferentData(@TempDir Path snapshotDir) {
+        int filmid1 = filmService.getFilms().get(0).getId();
+        int filmid2 = filmService.getFilms().get(1).getId();
+        int filmid3 = filmService.getFilms().get(2).getId();
+
+        int userid1 = userService.getUsers().get(0).getId();
+        int userid2 = userService.getUsers().get(1).getId();
+
+        filmService.addScoreToFilm(filmid1, userid1, 9);
+        filmService.addScoreToFilm(filmid2, userid1, 8);
+        filmService.addScoreToFilm(filmid1, userid2, 9);
+        filmService.addScoreToFilm(filmid3, userid2, 10);
+
+        Path snapshot = snapshotDir.resolve("mf-model.bin");
+
+        matrixFactorizationRecommendationService.trainAndPublish(snapshot);
+
+        float prediction = matrixFactorizationRecommendationService.predict(userid1, filmid3);
+        MatrixFactorizationRecommendationService restarted = new MatrixFactorizationRecommendationService(
+                factorModelTrainer, userScoreMatrix, filmStorage, "mf", snapshot.toString(), 20);
+
+        restarted.init();
+
+        assertEquals(prediction, restarted.predict(userid1, filmid3));
+
+        MatrixFactorizationRecommendationService disabled = new MatrixFactorizationRecommendationService(
+                factorModelTrainer, userScoreMatrix, filmStorage, "user", snapshot.toString(), 20);
+
+        disabled.init();
+        disabled.train();
+
+        assertTrue(Float.isNaN(disabled.predict(userid1, filmid3)));
+
+        filmService.deleteScoreFromFilm(filmid3, userid2);
+
+        MatrixFactorizationRecommendationService restartedWithStaleSnapshot =
+                new MatrixFactorizationRecommendationService(factorModelTrainer, userScoreMatrix, filmStorage,
+                        "mf", snapshot.toString(), 20);
+
+        restartedWithStaleSnapshot.init();
+
+        assertTrue(Float.isNaN(restartedWithStaleSnapshot.predict(userid1, filmid3)));
+        assertTrue(restartedWithStaleSnapshot.getRecommendations(userid1).isEmpty());
+        assertFalse(Files.exists(snapshot));
+    }
+
+    @Test
+    public void cachedRecommendationsShouldBeServedStaleAndRefreshedAfterNeighbourChanges()
+            throws InterruptedException {
+        int filmid1 = filmService.getFilms().get(0).getId();
+        int filmid2 = filmService.getFilms().get(1).getId();
+        int filmid3 = filmService.getFilms().get(2).getId();
+
+        int userid1 = userService.getUsers().get(0).getId();
+        int userid2 = userService.getUsers().get(1).getId();
+
+        filmService.addScoreToFilm(filmid1, userid1, 10);
+        filmService.addScoreToFilm(filmid2, userid1, 6);
+        filmService.addScoreToFilm(filmid2, userid2, 10);
+
+        assertEquals(Set.of(filmid1), recommendedFilmIds(userid2));
+
+        filmService.addScoreToFilm(filmid3, userid1, 9);
+
+        assertEquals(Set.of(filmid1), recommendedFilmIds(userid2));
+
+        recommendationCache.markNeighboursStale();
+
+        for (int attempt = 0; attempt < 100 && recommendedFilmIds(userid2).size() < 2; attempt++) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(Set.of(filmid1, filmid3), recommendedFilmIds(userid2));
+
+        filmService.addScoreToFilm(filmid1, userid2, 8);
+
+        assertEquals(Set.of(filmid3), recommendedFilmIds(userid2));
+    }
+
+    @Test
+    public void recommendationsShouldBeRankedBySimilarityWeightedScoresOfNearestNeighbours() {
+        int filmid1 = filmService.getFilms().get(0).getId();
+        int filmid2 = filmService.getFilms().get(1).getId();
+        int filmid3 = filmService.getFilms().get(2).getId();
+
+        int userid1 = userService.getUsers().get(0).getId();
+        int userid2 = userService.getUsers().get(1).getId();
+        int userid3 = userService.getUsers().get(2).getId();
+
+        filmService.addScoreToFilm(filmid1, userid1, 10);
+        filmService.addScoreToFilm(filmid2, userid1, 8);
+        filmService.addScoreToFilm(filmid1, userid2, 2);
+        filmService.addScoreToFilm(filmid3, userid2, 10);
+        filmService.addScoreToFilm(filmid1, userid3, 10);
+
+        List<Neighbour> neighbours = userNeighborsJob.getNeighbours(userid3);
+
+        assertEquals(List.of(userid1, userid2), neighbours.stream()
+                .map(Neighbour::getUserId)
+                .collect(Collectors.toList()));
+        assertTrue(neighbours.get(0).getSimilarity() * 8 > neighbours.get(1).getSimilarity() * 10);
+        assertEquals(List.of(filmid2, filmid3), recommendationService.getRecommendation(userid3).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+        assertEquals(List.of(filmid3), recommendationService.getRecommendation(userid1).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+    }
+
+    private Set<Integer> recommendedFilmIds(int userId) {
+        return recommendationService.getRecommendation(userId).stream()
+                .map(Film::getId)
+                .collect(Collectors.toSet());
+    }
 }
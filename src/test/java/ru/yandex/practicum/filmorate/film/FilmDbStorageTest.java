@@ -5,30 +5,42 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.model.*;
 import ru.yandex.practicum.filmorate.service.DirectorService;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.FilmStatsReconciliationJob;
+import ru.yandex.practicum.filmorate.service.ReviewService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.dao.film.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.dao.film.stats.FilmStatsStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class FilmDbStorageTest {
     private final Map<Integer, String> ratings = Map.of(1, "G", 2, "PG");
     private final Map<Integer, String> genres = Map.of(1, "Комедия", 2, "Драма");
     private final FilmService filmService;
     private final UserService userService;
     private final DirectorService directorService;
+    private final ReviewService reviewService;
+    private final FilmStatsStorage filmStatsStorage;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final FilmStatsReconciliationJob filmStatsReconciliationJob;
+    private final JdbcTemplate jdbcTemplate;
     private final Random random = new Random();
 
     @Test
@@ -54,6 +66,32 @@ public class FilmDbStorageTest {
         assertEquals(createdFilm, filmFromBd);
     }
 
+    @Test
+    public void shouldExportAllFilmsHydratedInChunks() {
+        Director director = directorService.createNewDirector(new Director(1, "Тарантино"));
+        List<Film> createdFilms = new ArrayList<>();
+
+        for (int i = 1; i <= 3; i++) {
+            Film film = Film.builder()
+                    .name("Test" + i)
+                    .description("TestDescription" + i)
+                    .releaseDate(LocalDate.of(1990 + i, 12, 28))
+                    .duration(200)
+                    .mpa(new Rating(1, ratings.get(1)))
+                    .genres(List.of(new Genre(1, genres.get(1))))
+                    .directors(List.of(director))
+                    .build();
+
+            createdFilms.add(filmService.createNewFilm(film));
+        }
+
+        List<Film> exportedFilms = new ArrayList<>();
+
+        filmService.exportFilms(exportedFilms::addAll);
+
+        assertEquals(createdFilms, exportedFilms);
+    }
+
     @Test
     public void shouldUpdateFilm() {
         Director director = directorService.createNewDirector(new Director(2, "Нолан"));
@@ -114,6 +152,72 @@ public class FilmDbStorageTest {
         assertFalse(filmService.getFilms().contains(filmFromBd));
     }
 
+    @Test
+    public void getFilmByIdShouldReflectEveryChangeImmediately() {
+        User user = userService.createNewUser(User.builder()
+                .email("cached@gmail.com")
+                .login("Cached")
+                .name("Cached")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+        Director firstDirector = directorService.createNewDirector(new Director(4, "Линч"));
+        Director secondDirector = directorService.createNewDirector(new Director(5, "Финчер"));
+
+        Film createdFilm = filmService.createNewFilm(Film.builder()
+                .name("Test")
+                .description("TestDescription")
+                .releaseDate(LocalDate.of(1895, 12, 28))
+                .duration(200)
+                .mpa(new Rating(1, ratings.get(1)))
+                .genres(List.of(new Genre(1, genres.get(1))))
+                .directors(List.of(firstDirector))
+                .build());
+        int filmId = createdFilm.getId();
+
+        assertEquals(createdFilm, filmService.getFilmById(filmId));
+
+        createdFilm.setName("UpdatedName");
+        filmService.updateFilm(createdFilm);
+
+        assertEquals("UpdatedName", filmService.getFilmById(filmId).getName());
+
+        createdFilm.setGenres(List.of(new Genre(2, genres.get(2))));
+        createdFilm.setDirectors(List.of(firstDirector, secondDirector));
+        filmService.updateFilm(createdFilm);
+
+        Film filmFromCache = filmService.getFilmById(filmId);
+
+        assertEquals(List.of(2), filmFromCache.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList()));
+        assertEquals(List.of(firstDirector.getId(), secondDirector.getId()), filmFromCache.getDirectors().stream()
+                .map(Director::getId)
+                .collect(Collectors.toList()));
+
+        createdFilm.setGenres(null);
+        createdFilm.setDirectors(null);
+        filmService.updateFilm(createdFilm);
+
+        assertTrue(filmService.getFilmById(filmId).getGenres().isEmpty());
+        assertTrue(filmService.getFilmById(filmId).getDirectors().isEmpty());
+
+        filmService.addScoreToFilm(filmId, user.getId(), 7);
+
+        assertEquals(7, filmService.getFilmById(filmId).getRanking());
+
+        filmService.addScoreToFilm(filmId, user.getId(), 3);
+
+        assertEquals(3, filmService.getFilmById(filmId).getRanking());
+
+        filmService.deleteScoreFromFilm(filmId, user.getId());
+
+        assertEquals(0, filmService.getFilmById(filmId).getRanking());
+
+        filmService.deleteFilmById(filmId);
+
+        assertThrows(NoSuchElementException.class, () -> filmService.getFilmById(filmId));
+    }
+
     @Test
     public void addRandomScoreToFilm() {
         User user = User.builder()
@@ -182,6 +286,196 @@ public class FilmDbStorageTest {
         assertFalse(filmService.getFilmScoreRecordByFilmIdUserIdAndScore(createdFilm.getId(), createdUser.getId(), 6));
     }
 
+    @Test
+    public void shouldKeepFilmStatsInSyncWithScoresAndReconcileDrift() {
+        User firstUser = userService.createNewUser(User.builder()
+                .email("first@gmail.com")
+                .login("First")
+                .name("First")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+        User secondUser = userService.createNewUser(User.builder()
+                .email("second@gmail.com")
+                .login("Second")
+                .name("Second")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+
+        Film createdFilm = filmService.createNewFilm(Film.builder()
+                .name("Test")
+                .description("TestDescription")
+                .releaseDate(LocalDate.of(1895, 12, 28))
+                .duration(200)
+                .mpa(new Rating(1, ratings.get(1)))
+                .build());
+
+        filmService.addScoreToFilm(createdFilm.getId(), firstUser.getId(), 4);
+        filmService.addScoreToFilm(createdFilm.getId(), secondUser.getId(), 9);
+        filmService.addScoreToFilm(createdFilm.getId(), secondUser.getId(), 8);
+
+        assertEquals(6, filmService.getFilmById(createdFilm.getId()).getRanking());
+
+        userService.deleteUserById(firstUser.getId());
+
+        assertEquals(8, filmService.getFilmById(createdFilm.getId()).getRanking());
+        assertTrue(filmStatsStorage.reconcileFilmStats().isEmpty());
+
+        jdbcTemplate.update("UPDATE film_stats SET score_count = 5, score_sum = 7 WHERE film_id = ?",
+                createdFilm.getId());
+
+        assertEquals(List.of(createdFilm.getId()), filmStatsStorage.reconcileFilmStats());
+        assertEquals(List.of(1L, 8L), jdbcTemplate.queryForObject("SELECT score_count, score_sum FROM film_stats " +
+                "WHERE film_id = ?", (rs, rowNum) -> List.of(rs.getLong("score_count"), rs.getLong("score_sum")),
+                createdFilm.getId()));
+    }
+
+    @Test
+    public void shouldImportScoresInBatchesAndReportRejectedItems() {
+        User firstUser = userService.createNewUser(User.builder()
+                .email("first@gmail.com")
+                .login("First")
+                .name("First")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+        User secondUser = userService.createNewUser(User.builder()
+                .email("second@gmail.com")
+                .login("Second")
+                .name("Second")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+
+        Film createdFilm = filmService.createNewFilm(Film.builder()
+                .name("Test")
+                .description("TestDescription")
+                .releaseDate(LocalDate.of(1895, 12, 28))
+                .duration(200)
+                .mpa(new Rating(1, ratings.get(1)))
+                .build());
+
+        filmService.addScoreToFilm(createdFilm.getId(), firstUser.getId(), 2);
+
+        ScoreImportResult result = filmService.importScores(List.of(
+                new FilmScore(createdFilm.getId(), firstUser.getId(), 6),
+                new FilmScore(createdFilm.getId(), secondUser.getId(), 3),
+                new FilmScore(9999, firstUser.getId(), 5),
+                new FilmScore(createdFilm.getId(), 9999, 5),
+                new FilmScore(createdFilm.getId(), secondUser.getId(), 11),
+                new FilmScore(createdFilm.getId(), null, 5),
+                new FilmScore(createdFilm.getId(), secondUser.getId(), 10)).iterator());
+
+        assertEquals(7, result.getReceived());
+        assertEquals(3, result.getImported());
+        assertEquals(4, result.getRejected());
+        assertEquals(List.of(2L, 3L, 4L, 5L), result.getErrors().stream()
+                .map(ScoreImportError::getIndex)
+                .collect(Collectors.toList()));
+        assertEquals(2, filmService.getUsersWhoScoredTheFilmById(createdFilm.getId()).size());
+        assertEquals(8, filmService.getFilmById(createdFilm.getId()).getRanking());
+        assertEquals(List.of(createdFilm.getId()), filmService.getTopFilmsByScores(1, null, null).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+        assertEquals(2, userService.getUserFeed(firstUser.getId()).size());
+        assertEquals(1, userService.getUserFeed(secondUser.getId()).size());
+        assertTrue(filmStatsStorage.reconcileFilmStats().isEmpty());
+    }
+
+    @Test
+    public void shouldKeepReviewUsefulEqualToLikesMinusDislikesWhenVotesAreFlipped() {
+        List<User> users = new ArrayList<>();
+
+        for (int i = 1; i <= 3; i++) {
+            users.add(userService.createNewUser(User.builder()
+                    .email("voter" + i + "@gmail.com")
+                    .login("Voter" + i)
+                    .name("Voter" + i)
+                    .birthday(LocalDate.of(2000, 1, i))
+                    .build()));
+        }
+
+        Film createdFilm = filmService.createNewFilm(Film.builder()
+                .name("Test")
+                .description("TestDescription")
+                .releaseDate(LocalDate.of(1895, 12, 28))
+                .duration(200)
+                .mpa(new Rating(1, ratings.get(1)))
+                .build());
+        int reviewId = reviewService.createNewReview(new Review(null, "Content", true, users.get(0).getId(),
+                createdFilm.getId(), 0)).getReviewId();
+        int secondUserId = users.get(1).getId();
+        int thirdUserId = users.get(2).getId();
+
+        reviewService.addLikeToReview(reviewId, secondUserId);
+
+        assertEquals(1, reviewService.getReviewById(reviewId).getUseful());
+
+        reviewService.addDislikeToReview(reviewId, secondUserId);
+
+        assertEquals(-1, reviewService.getReviewById(reviewId).getUseful());
+
+        reviewService.addDislikeToReview(reviewId, secondUserId);
+        reviewService.addLikeToReview(reviewId, thirdUserId);
+
+        assertEquals(0, reviewService.getReviewById(reviewId).getUseful());
+
+        reviewService.deleteLikeFromReview(reviewId, secondUserId);
+        reviewService.deleteDislikeFromReview(reviewId, secondUserId);
+
+        assertEquals(1, reviewService.getReviewById(reviewId).getUseful());
+
+        reviewService.addDislikeToReview(reviewId, thirdUserId);
+
+        assertEquals(-1, reviewService.getReviewById(reviewId).getUseful());
+
+        reviewService.deleteDislikeFromReview(reviewId, thirdUserId);
+
+        assertEquals(0, reviewService.getReviewById(reviewId).getUseful());
+    }
+
+    @Test
+    public void shouldValidateIdsAgainstLiveIndexAndForgetCascadedReviews() {
+        User firstUser = userService.createNewUser(User.builder()
+                .email("first@gmail.com")
+                .login("First")
+                .name("First")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+        User secondUser = userService.createNewUser(User.builder()
+                .email("second@gmail.com")
+                .login("Second")
+                .name("Second")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+
+        Film createdFilm = filmService.createNewFilm(Film.builder()
+                .name("Test")
+                .description("TestDescription")
+                .releaseDate(LocalDate.of(1895, 12, 28))
+                .duration(200)
+                .mpa(new Rating(1, ratings.get(1)))
+                .build());
+
+        filmService.addScoreToFilm(createdFilm.getId(), secondUser.getId(), 7);
+
+        assertTrue(filmService.getFilmScoreRecordByFilmIdUserIdAndScore(createdFilm.getId(), secondUser.getId(), 7));
+        assertThrows(NoSuchElementException.class, () ->
+                filmService.getFilmScoreRecordByFilmIdUserIdAndScore(createdFilm.getId(), 9999, 7));
+
+        Review review = reviewService.createNewReview(new Review(null, "Content", true, firstUser.getId(),
+                createdFilm.getId(), 0));
+
+        userService.deleteUserById(firstUser.getId());
+
+        assertThrows(NoSuchElementException.class, () ->
+                reviewService.addLikeToReview(review.getReviewId(), secondUser.getId()));
+        assertThrows(NoSuchElementException.class, () ->
+                filmService.addScoreToFilm(createdFilm.getId(), firstUser.getId(), 5));
+
+        filmService.deleteFilmById(createdFilm.getId());
+
+        assertThrows(NoSuchElementException.class, () ->
+                filmService.addScoreToFilm(createdFilm.getId(), secondUser.getId(), 5));
+    }
+
     @Test
     public void shouldGetTopFilmsByLikesAndTheThirdFilmMustBeOnTheFirstPlace() {
         User user1 = User.builder()
@@ -481,6 +775,109 @@ public class FilmDbStorageTest {
         assertEquals(createdFilm1.getId(), topFilmsByLikes.get(0).getId());
     }
 
+    @Test
+    public void popularityLeaderboardShouldFollowScoreAndFilmChangesInEveryView() {
+        List<User> users = new ArrayList<>();
+
+        for (int i = 1; i <= 2; i++) {
+            users.add(userService.createNewUser(User.builder()
+                    .email("popular" + i + "@gmail.com")
+                    .login("Popular" + i)
+                    .name("Popular" + i)
+                    .birthday(LocalDate.of(2000, 1, i))
+                    .build()));
+        }
+
+        int userId1 = users.get(0).getId();
+        int userId2 = users.get(1).getId();
+
+        Film filmA = filmService.createNewFilm(Film.builder()
+                .name("Popular A")
+                .description("TestDescription")
+                .releaseDate(LocalDate.of(1998, 1, 1))
+                .duration(100)
+                .mpa(new Rating(1, ratings.get(1)))
+                .genres(List.of(new Genre(1, genres.get(1))))
+                .build());
+
+        filmService.addScoreToFilm(filmA.getId(), userId1, 5);
+
+        Film filmB = filmService.createNewFilm(Film.builder()
+                .name("Popular B")
+                .description("TestDescription")
+                .releaseDate(LocalDate.of(1998, 6, 1))
+                .duration(100)
+                .mpa(new Rating(1, ratings.get(1)))
+                .genres(List.of(new Genre(2, genres.get(2))))
+                .build());
+
+        filmService.addScoreToFilm(filmB.getId(), userId1, 8);
+        filmService.addScoreToFilm(filmB.getId(), userId2, 6);
+
+        Film filmC = filmService.createNewFilm(Film.builder()
+                .name("Popular C")
+                .description("TestDescription")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Rating(1, ratings.get(1)))
+                .genres(List.of(new Genre(1, genres.get(1)), new Genre(2, genres.get(2))))
+                .build());
+
+        filmService.addScoreToFilm(filmC.getId(), userId1, 10);
+
+        int a = filmA.getId();
+        int b = filmB.getId();
+        int c = filmC.getId();
+
+        assertEquals(List.of(b, c, a), getTopFilmIds(10, null, null));
+        assertEquals(List.of(c, a), getTopFilmIds(10, 1, null));
+        assertEquals(List.of(b, c), getTopFilmIds(10, 2, null));
+        assertEquals(List.of(b, a), getTopFilmIds(10, null, 1998));
+        assertEquals(List.of(b), getTopFilmIds(10, 2, 1998));
+        assertEquals(List.of(c), getTopFilmIds(10, 1, 2000));
+        assertTrue(getTopFilmIds(10, 2, 1999).isEmpty());
+        assertEquals(List.of(b, c), getTopFilmIds(2, null, null));
+
+        filmService.addScoreToFilm(a, userId2, 10);
+
+        assertEquals(List.of(a, b, c), getTopFilmIds(10, null, null));
+        assertEquals(List.of(a, c), getTopFilmIds(10, 1, null));
+
+        filmC.setReleaseDate(LocalDate.of(1998, 3, 1));
+        filmC.setGenres(List.of(new Genre(2, genres.get(2))));
+        filmService.updateFilm(filmC);
+
+        assertEquals(List.of(a, b, c), getTopFilmIds(10, null, 1998));
+        assertEquals(List.of(a), getTopFilmIds(10, 1, null));
+        assertEquals(List.of(b, c), getTopFilmIds(10, 2, 1998));
+        assertTrue(getTopFilmIds(10, null, 2000).isEmpty());
+
+        filmService.deleteScoreFromFilm(b, userId1);
+
+        assertEquals(List.of(a, c, b), getTopFilmIds(10, null, null));
+
+        filmService.deleteFilmById(a);
+
+        assertEquals(List.of(c, b), getTopFilmIds(10, null, null));
+        assertTrue(getTopFilmIds(10, 1, null).isEmpty());
+
+        List<Integer> incrementalOrder = popularityLeaderboard.getPopularityOrder();
+
+        popularityLeaderboard.rebuild();
+
+        assertEquals(incrementalOrder, popularityLeaderboard.getPopularityOrder());
+
+        jdbcTemplate.update("UPDATE film_stats SET score_count = 100, score_sum = 1000 WHERE film_id = ?", b);
+        popularityLeaderboard.rebuild();
+
+        assertEquals(List.of(b, c), getTopFilmIds(10, null, null));
+
+        filmStatsReconciliationJob.reconcile();
+
+        assertEquals(List.of(c, b), getTopFilmIds(10, null, null));
+        assertEquals(incrementalOrder, popularityLeaderboard.getPopularityOrder());
+    }
+
     @Test
     public void shouldGetTopCommonsFilms() {
         User user1 = User.builder()
@@ -555,6 +952,52 @@ public class FilmDbStorageTest {
         assertEquals(createdFilm3.getId(), topCommonFilms.get(0).getId());
     }
 
+    @Test
+    public void shouldGetTopCommonFilmsForGroupAndFollowScoreChanges() {
+        List<User> users = new ArrayList<>();
+        List<Film> films = new ArrayList<>();
+
+        for (int i = 1; i <= 3; i++) {
+            users.add(userService.createNewUser(User.builder()
+                    .email("group" + i + "@gmail.com")
+                    .login("Group" + i)
+                    .name("Group" + i)
+                    .birthday(LocalDate.of(2000, 1, i))
+                    .build()));
+            films.add(filmService.createNewFilm(Film.builder()
+                    .name("Group film " + i)
+                    .description("TestDescription")
+                    .releaseDate(LocalDate.of(2000, 1, i))
+                    .duration(100)
+                    .mpa(new Rating(1, ratings.get(1)))
+                    .build()));
+        }
+
+        for (User user : users) {
+            filmService.addScoreToFilm(films.get(0).getId(), user.getId(), 5);
+            filmService.addScoreToFilm(films.get(2).getId(), user.getId(), 9);
+        }
+
+        filmService.addScoreToFilm(films.get(1).getId(), users.get(0).getId(), 7);
+        filmService.addScoreToFilm(films.get(1).getId(), users.get(1).getId(), 7);
+
+        List<Integer> userIds = List.of(users.get(0).getId(), users.get(1).getId(), users.get(2).getId());
+
+        assertEquals(List.of(films.get(2).getId(), films.get(0).getId()), filmService.getTopCommonFilms(userIds)
+                .stream().map(Film::getId).collect(Collectors.toList()));
+
+        filmService.deleteScoreFromFilm(films.get(2).getId(), users.get(2).getId());
+        filmService.addScoreToFilm(films.get(1).getId(), users.get(2).getId(), 7);
+
+        assertEquals(List.of(films.get(1).getId(), films.get(0).getId()), filmService.getTopCommonFilms(userIds)
+                .stream().map(Film::getId).collect(Collectors.toList()));
+        assertThrows(NoSuchElementException.class, () -> filmService.getTopCommonFilms(List.of(users.get(0).getId(),
+                9999)));
+        assertTrue(filmService.getTopCommonFilms(users.get(0).getId(), users.get(0).getId()).isEmpty());
+        assertTrue(filmService.getTopCommonFilms(List.of(users.get(1).getId())).isEmpty());
+        assertTrue(filmService.getTopCommonFilms(List.of(users.get(1).getId(), users.get(1).getId())).isEmpty());
+    }
+
     @Test
     public void shouldNotGetTopCommonsFilmsIfWrongIdentifiers() {
         User user1 = User.builder()
@@ -704,4 +1147,10 @@ public class FilmDbStorageTest {
         assertTrue(filmService.getUsersWhoScoredTheFilmById(createdFilm.getId()).contains(createdUser));
         assertTrue(filmService.getFilmScoreRecordByFilmIdUserIdAndScore(createdFilm.getId(), createdUser.getId(), randomScore));
     }
-}
\ No newline at end of file
+
+    private List<Integer> getTopFilmIds(int count, Integer genreId, Integer year) {
+        return filmService.getTopFilmsByScores(count, genreId, year).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+}
@@ -13,6 +13,7 @@ import ru.yandex.practicum.filmorate.exception.ScoreValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.ScoreImportResult;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
@@ -20,6 +21,10 @@ import ru.yandex.practicum.filmorate.service.UserService;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -31,7 +36,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 @SpringBootTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class FilmValidateTest {
     private final Map<Integer, String> ratings = Map.of(1, "G", 2, "PG");
     private final Map<Integer, String> genres = Map.of(1, "Комедия", 2, "Драма");
@@ -143,4 +148,45 @@ public class FilmValidateTest {
         assertThrows(ScoreValidationException.class, () ->
                 filmController.addScoreToFilm(createdUser.getId(), createdFilm.getId(), -1));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldImportScoresFromJsonArrayAndNdjsonAndRejectMalformedBody() throws IOException {
+        User createdUser = userService.createNewUser(User.builder()
+                .email("belyachok567811@gmail.com")
+                .login("Ilya")
+                .name("BLADBORNE")
+                .birthday(LocalDate.of(2024, 3, 4))
+                .build());
+
+        Film createdFilm = filmService.createNewFilm(Film.builder()
+                .name("Test")
+                .description("TestDescription")
+                .releaseDate(LocalDate.of(1895, 12, 28))
+                .duration(200)
+                .mpa(new Rating(1, ratings.get(1)))
+                .build());
+
+        String array = String.format("[{\"filmId\": %d, \"userId\": %d, \"score\": 4}, " +
+                "{\"filmId\": %d, \"userId\": %d, \"score\": 0}]", createdFilm.getId(), createdUser.getId(),
+                createdFilm.getId(), createdUser.getId());
+        ScoreImportResult arrayResult = filmController.importScores(toStream(array));
+
+        assertEquals(2, arrayResult.getReceived());
+        assertEquals(1, arrayResult.getImported());
+        assertEquals(1, arrayResult.getErrors().get(0).getIndex());
+
+        String ndjson = String.format("{\"filmId\": %d, \"userId\": %d, \"score\": 9}\n", createdFilm.getId(),
+                createdUser.getId());
+        ScoreImportResult ndjsonResult = filmController.importScores(toStream(ndjson));
+
+        assertEquals(1, ndjsonResult.getImported());
+        assertEquals(9, filmService.getFilmById(createdFilm.getId()).getRanking());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                filmController.importScores(toStream("{\"filmId\": \"abc\"}")));
+    }
+
+    private static InputStream toStream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
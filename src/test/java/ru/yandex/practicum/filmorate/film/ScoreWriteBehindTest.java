@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.exception.WriteQueueUnavailableException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ScoreWriteBehindQueue;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "filmorate.scores.write-behind.enabled=true",
+        "filmorate.scores.write-behind.capacity=2",
+        "filmorate.scores.write-behind.flush-interval=1h",
+        "filmorate.scores.write-behind.offer-timeout=10ms"
+})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext
+public class ScoreWriteBehindTest {
+    private final FilmService filmService;
+    private final UserService userService;
+    private final ScoreWriteBehindQueue scoreWriteBehindQueue;
+
+    @Test
+    public void shouldCoalesceQueuedScoresApplyBackpressureAndFlushInBatch() {
+        User firstUser = userService.createNewUser(User.builder()
+                .email("first@gmail.com")
+                .login("First")
+                .name("First")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+        User secondUser = userService.createNewUser(User.builder()
+                .email("second@gmail.com")
+                .login("Second")
+                .name("Second")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+
+        Film firstFilm = filmService.createNewFilm(Film.builder()
+                .name("First")
+                .description("TestDescription")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Rating(1, "G"))
+                .build());
+        Film secondFilm = filmService.createNewFilm(Film.builder()
+                .name("Second")
+                .description("TestDescription")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Rating(1, "G"))
+                .build());
+
+        assertThrows(NoSuchElementException.class, () ->
+                filmService.addScoreToFilm(9999, firstUser.getId(), 3));
+        assertThrows(NoSuchElementException.class, () ->
+                filmService.addScoreToFilm(firstFilm.getId(), 9999, 3));
+        assertThrows(NoSuchElementException.class, () ->
+                filmService.deleteScoreFromFilm(9999, firstUser.getId()));
+        assertThrows(NoSuchElementException.class, () ->
+                filmService.deleteScoreFromFilm(firstFilm.getId(), 9999));
+        assertEquals(0, scoreWriteBehindQueue.getQueueDepth());
+
+        filmService.addScoreToFilm(firstFilm.getId(), firstUser.getId(), 3);
+        filmService.addScoreToFilm(firstFilm.getId(), firstUser.getId(), 7);
+        filmService.addScoreToFilm(secondFilm.getId(), firstUser.getId(), 5);
+
+        assertEquals(2, scoreWriteBehindQueue.getQueueDepth());
+        assertThrows(WriteQueueUnavailableException.class, () ->
+                filmService.addScoreToFilm(firstFilm.getId(), secondUser.getId(), 9));
+
+        filmService.addScoreToFilm(secondFilm.getId(), firstUser.getId(), 6);
+
+        assertTrue(filmService.getUsersWhoScoredTheFilmById(firstFilm.getId()).isEmpty());
+
+        scoreWriteBehindQueue.flush();
+
+        assertEquals(0, scoreWriteBehindQueue.getQueueDepth());
+        assertEquals(7, filmService.getFilmById(firstFilm.getId()).getRanking());
+        assertEquals(6, filmService.getFilmById(secondFilm.getId()).getRanking());
+        assertEquals(2, userService.getUserFeed(firstUser.getId()).size());
+
+        filmService.deleteScoreFromFilm(firstFilm.getId(), firstUser.getId());
+        scoreWriteBehindQueue.flush();
+
+        assertEquals(0, filmService.getFilmById(firstFilm.getId()).getRanking());
+        assertEquals(3, userService.getUserFeed(firstUser.getId()).size());
+    }
+}
@@ -17,7 +17,7 @@ import static org.junit.jupiter.api.Assertions.*;
 @SpringBootTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class DbGenreStorageTest {
     private final Map<Integer, String> genres = Map.of(1, "Комедия", 2, "Драма", 3, "Мультфильм",
             4, "Триллер", 5, "Документальный", 6, "Боевик");
@@ -6,21 +6,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.UserEvent;
+import ru.yandex.practicum.filmorate.service.FriendSuggestionService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.dao.user.FriendGraph;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class DbUserStorageTest {
     private final UserService userService;
+    private final FriendGraph friendGraph;
+    private final FriendSuggestionService friendSuggestionService;
 
     @Test
     public void shouldCreateUserAndFindUserById() {
@@ -191,6 +198,46 @@ public class DbUserStorageTest {
         assertTrue(userFriends.contains(created3));
     }
 
+    @Test
+    public void shouldGetUsersPageByPageWithCursor() {
+        User user1 = User.builder()
+                .email("belyachok567811@gmail.com")
+                .login("Ilya")
+                .name("BLADBORNE")
+                .birthday(LocalDate.of(2024, 3, 4))
+                .build();
+
+        User user2 = User.builder()
+                .email("iliashacool@gmail.com")
+                .login("Maxim")
+                .name("Max228")
+                .birthday(LocalDate.of(2012, 12, 1))
+                .build();
+
+        User user3 = User.builder()
+                .email("test12@gmail.com")
+                .login("Anstasya")
+                .name("Milo23")
+                .birthday(LocalDate.of(2008, 12, 1))
+                .build();
+
+        User created1 = userService.createNewUser(user1);
+        User created2 = userService.createNewUser(user2);
+        User created3 = userService.createNewUser(user3);
+
+        Page<User> firstPage = userService.getUsersPage(null, 2);
+
+        assertEquals(List.of(created1, created2), firstPage.getItems());
+        assertNotNull(firstPage.getNext());
+
+        Page<User> secondPage = userService.getUsersPage(firstPage.getNext(), 2);
+
+        assertEquals(List.of(created3), secondPage.getItems());
+        assertNull(secondPage.getNext());
+        assertThrows(IllegalArgumentException.class, () -> userService.getUsersPage("broken", 2));
+        assertThrows(IllegalArgumentException.class, () -> userService.getUsersPage(null, 0));
+    }
+
     @Test
     public void shouldGetCommonFriendsUser1AndUser2() {
         User user1 = User.builder()
@@ -281,4 +328,84 @@ public class DbUserStorageTest {
         assertEquals(user2.getId(), event.getEntityId());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void friendGraphShouldFollowFriendshipChangesAndMatchRebuild() {
+        List<User> users = new ArrayList<>();
+
+        for (int i = 1; i <= 4; i++) {
+            users.add(userService.createNewUser(User.builder()
+                    .email("graph" + i + "@gmail.com")
+                    .login("graph" + i)
+                    .name("graph" + i)
+                    .birthday(LocalDate.of(2000, 1, i))
+                    .build()));
+        }
+
+        int id1 = users.get(0).getId();
+        int id2 = users.get(1).getId();
+        int id3 = users.get(2).getId();
+        int id4 = users.get(3).getId();
+
+        userService.addFriend(id1, id4);
+        userService.addFriend(id1, id3);
+        userService.addFriend(id2, id3);
+        userService.addFriend(id2, id4);
+
+        assertEquals(List.of(users.get(2), users.get(3)), userService.getCommonFriends(id1, id2));
+        assertEquals(List.of(users.get(2), users.get(3)), userService.getUsersFriends(id1));
+        assertEquals(2, friendGraph.getFollowersCount(id3));
+
+        friendGraph.rebuild();
+
+        assertArrayEquals(new int[]{id3, id4}, friendGraph.getCommonFriends(id1, id2));
+        assertArrayEquals(new int[]{id3, id4}, friendGraph.getFriends(id2));
+        assertEquals(0, friendGraph.getFriends(id4).length);
+
+        userService.deleteFriend(id2, id4);
+
+        assertEquals(List.of(users.get(2)), userService.getCommonFriends(id1, id2));
+
+        userService.deleteUserById(id3);
+
+        assertTrue(userService.getCommonFriends(id1, id2).isEmpty());
+        assertEquals(List.of(users.get(3)), userService.getUsersFriends(id1));
+        assertEquals(0, friendGraph.getFollowersCount(id3));
+        assertEquals(1, friendGraph.getFollowersCount(id4));
+    }
+
+    @Test
+    public void shouldSuggestSecondDegreeFriendsByMutualFriendsCount() {
+        List<User> users = new ArrayList<>();
+
+        for (int i = 1; i <= 6; i++) {
+            users.add(userService.createNewUser(User.builder()
+                    .email("suggest" + i + "@gmail.com")
+                    .login("suggest" + i)
+                    .name("suggest" + i)
+                    .birthday(LocalDate.of(2000, 1, i))
+                    .build()));
+        }
+
+        int id1 = users.get(0).getId();
+        int id2 = users.get(1).getId();
+        int id3 = users.get(2).getId();
+        int id4 = users.get(3).getId();
+        int id5 = users.get(4).getId();
+        int id6 = users.get(5).getId();
+
+        userService.addFriend(id1, id2);
+        userService.addFriend(id1, id3);
+        userService.addFriend(id2, id5);
+        userService.addFriend(id3, id5);
+        userService.addFriend(id3, id4);
+        userService.addFriend(id2, id6);
+        userService.addFriend(id6, id1);
+        userService.addFriend(id2, id3);
+
+        assertEquals(List.of(users.get(4), users.get(3)), friendSuggestionService.getSuggestions(id1, 10));
+        assertEquals(List.of(users.get(4)), friendSuggestionService.getSuggestions(id1, 1));
+        assertTrue(friendSuggestionService.getSuggestions(id4, 10).isEmpty());
+        assertThrows(NoSuchElementException.class, () -> friendSuggestionService.getSuggestions(100, 10));
+        assertThrows(IllegalArgumentException.class, () -> friendSuggestionService.getSuggestions(id1, 0));
+    }
+}